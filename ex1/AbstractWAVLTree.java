@@ -0,0 +1,348 @@
+/**
+ * AbstractWAVLTree
+ * <p>
+ * The key-independent part of a WAVL Tree: node linking, rotations, rebalancing after
+ * insertion and deletion, subtree sizes, select, successor and predecessor.
+ * subclasses add the keys and info to their node class and do the searching,
+ * so keys of any type (primitive or not) are compared without boxing.
+ * <p>
+ * rebalancing is a copy of WAVLTree's insertRebalance() and deleteRebalance(), and counts
+ * rebalancing operations the same way. WAVLTree keeps its own copy, so a change to either must be
+ * made to both: WAVLBenchmark.keyTypes() fails if LongWAVLTree or GenericWAVLTree count differently.
+ * external leaves are null, with rank -1 and size 0.
+ */
+
+public abstract class AbstractWAVLTree<N extends AbstractWAVLTree.Node<N>> {
+
+	protected N root = null;
+	protected N MIN = null;
+	protected N MAX = null;
+
+	/**
+	 * public boolean empty()
+	 * <p>
+	 * returns true if and only if the tree is empty
+	 */
+	public boolean empty() {
+		return this.root == null;
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of nodes in the tree.
+	 */
+	public int size() {
+		return size(this.root);
+	}
+
+	protected static int rank(Node<?> node) {
+		return node == null ? -1 : node.rank;
+	}
+
+	protected static int size(Node<?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	/**
+	 * protected abstract void copyPayload(N from, N to)
+	 * <p>
+	 * copies from's key and info into to, used by delete() to replace a node with its successor
+	 */
+	protected abstract void copyPayload(N from, N to);
+
+	/**
+	 * protected int attach(N node, N parent, boolean asLeft)
+	 * <p>
+	 * inserts node as a new leaf under parent (as the root if parent is null),
+	 * on the side the subclass found by searching, and rebalances.
+	 * returns the number of rebalancing operations performed
+	 * <p>
+	 * precondition: parent's child on that side is an external leaf
+	 */
+	protected int attach(N node, N parent, boolean asLeft) {
+		node.left = null;
+		node.right = null;
+		node.parent = parent;
+		node.rank = 0;
+		node.size = 1;
+		if (parent == null) { // tree was empty
+			this.root = node;
+			this.MIN = node;
+			this.MAX = node;
+			return 0;
+		}
+		if (asLeft) {
+			parent.left = node;
+			if (parent == this.MIN) // only the minimum's left child can be smaller than it
+				this.MIN = node;
+		} else {
+			parent.right = node;
+			if (parent == this.MAX)
+				this.MAX = node;
+		}
+		for (N x = parent; x != null; x = x.parent) // increase all needed subtree sizes
+			x.size++;
+		return this.insertRebalance(node);
+	}
+
+	/**
+	 * protected int remove(N node)
+	 * <p>
+	 * removes node from the tree and rebalances.
+	 * a node with two children takes its successor's payload, and the successor is unlinked instead.
+	 * so does a root with one child, taking its child's payload, like WAVLTree switches them:
+	 * the root is then left a (2,2) leaf and demoted.
+	 * returns the number of rebalancing operations performed
+	 */
+	protected int remove(N node) {
+		N toRemove = node;
+		if (node.left != null && node.right != null) { // two children, take successor's place
+			toRemove = minNode(node.right);
+			this.copyPayload(toRemove, node);
+			if (this.MAX == toRemove)
+				this.MAX = node;
+		} else if (node.parent == null && (node.left != null || node.right != null)) { // root of a 2-node tree
+			toRemove = node.left != null ? node.left : node.right;
+			this.copyPayload(toRemove, node);
+			this.MIN = node;
+			this.MAX = node;
+		} else {
+			if (this.MIN == node)
+				this.MIN = this.successor(node);
+			if (this.MAX == node)
+				this.MAX = this.predecessor(node);
+		}
+		N child = toRemove.left != null ? toRemove.left : toRemove.right;
+		N parent = toRemove.parent;
+		if (child != null)
+			child.parent = parent;
+		if (parent == null)
+			this.root = child;
+		else if (parent.left == toRemove)
+			parent.left = child;
+		else
+			parent.right = child;
+		toRemove.parent = null;
+		toRemove.left = null;
+		toRemove.right = null;
+		for (N x = parent; x != null; x = x.parent) // decrease all needed subtree sizes
+			x.size--;
+		if (parent == null) // removed the root, which was a leaf
+			return 0;
+		return this.deleteRebalance(parent);
+	}
+
+	/**
+	 * private void rotate(N node)
+	 * <p>
+	 * performs a rotation moving node above its parent, by reassigning parents and children.
+	 * right rotation if node is a left child, left rotation otherwise.
+	 * does not promote or demote nodes
+	 */
+	private void rotate(N node) {
+		N parent = node.parent;
+		N grandParent = parent.parent;
+		if (parent.left == node) { // right rotation
+			N inner = node.right;
+			parent.left = inner;
+			if (inner != null)
+				inner.parent = parent;
+			node.right = parent;
+		} else { // left rotation
+			N inner = node.left;
+			parent.right = inner;
+			if (inner != null)
+				inner.parent = parent;
+			node.left = parent;
+		}
+		parent.parent = node;
+		node.parent = grandParent;
+		if (grandParent == null)
+			this.root = node;
+		else if (grandParent.left == parent)
+			grandParent.left = node;
+		else
+			grandParent.right = node;
+		node.size = parent.size;
+		parent.size = size(parent.left) + size(parent.right) + 1;
+	}
+
+	/**
+	 * private int insertRebalance(N node)
+	 * <p>
+	 * performs the different rebalancing operations on the tree,
+	 * following an insertion, until it is a balanced WAVL tree again.
+	 * returns the number of rebalancing operations performed
+	 */
+	private int insertRebalance(N node) {
+		int rebalances = 0;
+		N parent = node.parent;
+		while (parent != null && parent.rank == node.rank) { // node is a 0-child
+			boolean isLeft = parent.left == node;
+			N sibling = isLeft ? parent.right : parent.left;
+			if (parent.rank - rank(sibling) == 1) { // case 1, promote and go up
+				parent.rank++;
+				rebalances++;
+				node = parent;
+				parent = node.parent;
+				continue;
+			}
+			N inner = isLeft ? node.right : node.left;
+			if (node.rank - rank(inner) == 2) { // case 2, single rotation
+				this.rotate(node);
+				parent.rank--;
+				return rebalances + 2;
+			}
+			this.rotate(inner); // case 3, double rotation around node's inner child
+			this.rotate(inner);
+			node.rank--;
+			parent.rank--;
+			inner.rank++;
+			return rebalances + 5;
+		}
+		return rebalances; // get here if promotions were enough
+	}
+
+	/**
+	 * private int deleteRebalance(N node)
+	 * <p>
+	 * rebalances tree, starting with node, the parent of the removed node,
+	 * and returns the number of rebalancing operations performed
+	 */
+	private int deleteRebalance(N node) {
+		int rebalances = 0;
+		if (node.rank - rank(node.left) == 2 && node.rank - rank(node.right) == 2) { // node became a (2,2), demote it like WAVLTree
+			node.rank--;
+			rebalances++;
+			node = node.parent;
+		}
+		while (node != null) {
+			int leftDiff = node.rank - rank(node.left);
+			int rightDiff = node.rank - rank(node.right);
+			if (leftDiff != 3 && rightDiff != 3) // no 3-child, tree is valid
+				break;
+			boolean leftShort = leftDiff == 3;
+			N sibling = leftShort ? node.right : node.left;
+			if ((leftShort ? rightDiff : leftDiff) == 2) { // case 1, demote and go up
+				node.rank--;
+				rebalances++;
+				node = node.parent;
+				continue;
+			}
+			N outer = leftShort ? sibling.right : sibling.left;
+			N inner = leftShort ? sibling.left : sibling.right;
+			int outerDiff = sibling.rank - rank(outer);
+			if (outerDiff == 2 && sibling.rank - rank(inner) == 2) { // case 2, double demote and go up
+				node.rank--;
+				sibling.rank--;
+				rebalances += 2;
+				node = node.parent;
+				continue;
+			}
+			if (outerDiff == 1) { // case 3, single rotation
+				this.rotate(sibling);
+				sibling.rank++;
+				node.rank--;
+				rebalances += 3;
+				if (node.left == null && node.right == null && node.rank == 1) { // a (2,2) leaf
+					node.rank--;
+					rebalances++;
+				}
+				return rebalances;
+			}
+			this.rotate(inner); // case 4, double rotation around sibling's inner child
+			this.rotate(inner);
+			sibling.rank--;
+			node.rank -= 2;
+			inner.rank += 2;
+			return rebalances + 7;
+		}
+		return rebalances; // get here if demotions were enough
+	}
+
+	/**
+	 * protected N selectNode(int i)
+	 * <p>
+	 * Returns the node of the i'th smallest key, or null if there is none.
+	 * starts from MIN and climbs to the LCA of MIN and that node, so it takes O(log i)
+	 */
+	protected N selectNode(int i) {
+		if (i <= 0 || this.size() < i)
+			return null;
+		N x = this.MIN;
+		while (x.size < i) //find the LCA of the minimal key and i'th smallest key
+			x = x.parent;
+		while (true) {
+			int r = size(x.left) + 1;
+			if (i == r)
+				return x;
+			if (i < r) {
+				x = x.left;
+			} else {
+				x = x.right;
+				i -= r;
+			}
+		}
+	}
+
+	protected static <N extends Node<N>> N minNode(N node) {//keep going left, stop before external leaf
+		while (node.left != null)
+			node = node.left;
+		return node;
+	}
+
+	protected static <N extends Node<N>> N maxNode(N node) {//keep going right, stop before external leaf
+		while (node.right != null)
+			node = node.right;
+		return node;
+	}
+
+	/**
+	 * protected N successor(N x)
+	 * <p>
+	 * Returns the node with key following x according to the sorted order of keys,
+	 * or null if x is the maximal node
+	 */
+	protected N successor(N x) {
+		if (x.right != null)
+			return minNode(x.right);
+		N y = x.parent;
+		while (y != null && x == y.right) {
+			x = y;
+			y = x.parent;
+		}
+		return y;
+	}
+
+	/**
+	 * protected N predecessor(N x)
+	 * <p>
+	 * Returns the node with key preceding x according to the sorted order of keys,
+	 * or null if x is the minimal node
+	 */
+	protected N predecessor(N x) {
+		if (x.left != null)
+			return maxNode(x.left);
+		N y = x.parent;
+		while (y != null && x == y.left) {
+			x = y;
+			y = x.parent;
+		}
+		return y;
+	}
+
+	/**
+	 * public abstract static class Node
+	 * <p>
+	 * The structure of a node. subclasses add the key and info fields.
+	 * fields are accessed directly, so the rebalancing code makes no virtual calls
+	 */
+	public abstract static class Node<N extends Node<N>> {
+		N left;
+		N right;
+		N parent;
+		int rank;
+		int size;
+	}
+}
@@ -0,0 +1,220 @@
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * ConcurrentWAVLTree
+ * <p>
+ * A thread-safe WAVLTree. writers (insert, delete) serialize on a StampedLock,
+ * while readers (search, select, min, max, size) first run as optimistic reads
+ * that take no lock and don't block each other, and fall back to a read lock
+ * only if a writer got in the way.
+ * <p>
+ * An optimistic read may see the tree in the middle of a rotation, so it never trusts what it saw:
+ * walks are bounded, anything thrown is swallowed, and the result is used only if the stamp validates.
+ */
+
+public class ConcurrentWAVLTree {
+
+	private static final int MAX_STEPS = 128; // a WAVL tree of int keys is never this high (height <= 2log(n))
+
+	private final WAVLTree tree = new WAVLTree();
+	private final StampedLock lock = new StampedLock();
+
+	/**
+	 * public int insert(int k, String i)
+	 * <p>
+	 * same as WAVLTree.insert(k, i), under the write lock
+	 */
+	public int insert(int k, String i) {
+		long stamp = this.lock.writeLock();
+		try {
+			return this.tree.insert(k, i);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * public int delete(int k)
+	 * <p>
+	 * same as WAVLTree.delete(k), under the write lock
+	 */
+	public int delete(int k) {
+		long stamp = this.lock.writeLock();
+		try {
+			return this.tree.delete(k);
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * public WAVLTree.IWAVLNode pollFirst()
+	 * <p>
+	 * same as WAVLTree.pollFirst(), under the write lock.
+	 * the returned node is already out of the tree, so reading it needs no lock
+	 */
+	public WAVLTree.IWAVLNode pollFirst() {
+		long stamp = this.lock.writeLock();
+		try {
+			return this.tree.pollFirst();
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * public WAVLTree.IWAVLNode pollLast()
+	 * <p>
+	 * same as WAVLTree.pollLast(), under the write lock
+	 */
+	public WAVLTree.IWAVLNode pollLast() {
+		long stamp = this.lock.writeLock();
+		try {
+			return this.tree.pollLast();
+		} finally {
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * public String search(int k)
+	 * <p>
+	 * same as WAVLTree.search(k), as an optimistic read
+	 */
+	public String search(int k) {
+		long stamp = this.lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				String result = this.walkSearch(k);
+				if (this.lock.validate(stamp))
+					return result;
+			} catch (RuntimeException e) { // torn read, retry under the read lock
+			}
+		}
+		stamp = this.lock.readLock();
+		try {
+			return this.tree.search(k);
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * public String select(int i)
+	 * <p>
+	 * same as WAVLTree.select(i), as an optimistic read
+	 */
+	public String select(int i) {
+		long stamp = this.lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				String result = this.walkSelect(i);
+				if (this.lock.validate(stamp))
+					return result;
+			} catch (RuntimeException e) { // torn read, retry under the read lock
+			}
+		}
+		stamp = this.lock.readLock();
+		try {
+			return this.tree.select(i);
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * public String min()
+	 * <p>
+	 * same as WAVLTree.min(), as an optimistic read
+	 */
+	public String min() {
+		long stamp = this.lock.tryOptimisticRead();
+		String result = this.tree.min(); // reads two fields, can't loop or throw
+		if (stamp != 0 && this.lock.validate(stamp))
+			return result;
+		stamp = this.lock.readLock();
+		try {
+			return this.tree.min();
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * public String max()
+	 * <p>
+	 * same as WAVLTree.max(), as an optimistic read
+	 */
+	public String max() {
+		long stamp = this.lock.tryOptimisticRead();
+		String result = this.tree.max();
+		if (stamp != 0 && this.lock.validate(stamp))
+			return result;
+		stamp = this.lock.readLock();
+		try {
+			return this.tree.max();
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * same as WAVLTree.size(), as an optimistic read
+	 */
+	public int size() {
+		long stamp = this.lock.tryOptimisticRead();
+		int result = this.tree.size();
+		if (stamp != 0 && this.lock.validate(stamp))
+			return result;
+		stamp = this.lock.readLock();
+		try {
+			return this.tree.size();
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * private String walkSearch(int k)
+	 * <p>
+	 * searches for k from the root, giving up after MAX_STEPS nodes,
+	 * since a concurrent rotation might make the walk go around in circles
+	 */
+	private String walkSearch(int k) {
+		WAVLTree.IWAVLNode node = this.tree.getRoot();
+		for (int steps = 0; node != null && node.isRealNode(); steps++) {
+			if (steps == MAX_STEPS)
+				throw new IllegalStateException("walk too long");
+			int key = node.getKey();
+			if (key == k)
+				return node.getValue();
+			node = key < k ? node.getRight() : node.getLeft();
+		}
+		return null;
+	}
+
+	/**
+	 * private String walkSelect(int i)
+	 * <p>
+	 * finds the i'th smallest key from the root using subtree sizes, giving up after MAX_STEPS nodes
+	 */
+	private String walkSelect(int i) {
+		WAVLTree.IWAVLNode node = this.tree.getRoot();
+		if (node == null || i <= 0 || node.getSubtreeSize() < i)
+			return null;
+		for (int steps = 0; steps < MAX_STEPS; steps++) {
+			int r = node.getLeft().getSubtreeSize() + 1;
+			if (i == r)
+				return node.getValue();
+			if (i < r) {
+				node = node.getLeft();
+			} else {
+				node = node.getRight();
+				i -= r;
+			}
+		}
+		throw new IllegalStateException("walk too long");
+	}
+}
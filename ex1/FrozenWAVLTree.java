@@ -0,0 +1,188 @@
+/**
+ * FrozenWAVLTree
+ * <p>
+ * An immutable, read-only copy of a WAVLTree, made by WAVLTree.freeze().
+ * keys are kept twice in primitive arrays: in sorted order, for select() and range scans,
+ * and in Eytzinger order (the BFS order of a complete binary search tree, root at index 1, children of i at 2i and 2i+1),
+ * for searching. searching walks down the Eytzinger array without a data dependent branch,
+ * and the first levels share the same few cache lines, so lookups miss the cache far less than walking nodes does.
+ * <p>
+ * costs 12 bytes per key plus the info array, against 48 for a WAVLNode with compressed references
+ * (a 12 byte header, four references, key, rank and size, and the aggregate's long), as WAVLBenchmark.layouts() measures.
+ */
+
+public class FrozenWAVLTree {
+
+	private final int[] keys; // sorted
+	private final String[] values; // values[j] is the info of keys[j]
+	private final int[] eytzinger; // keys in Eytzinger order, eytzinger[0] unused
+	private final int[] position; // position[slot] is the index in keys of eytzinger[slot]
+
+	/**
+	 * FrozenWAVLTree(int[] keys, String[] values)
+	 * <p>
+	 * builds the Eytzinger layout of the given items in O(n). the arrays are kept, not copied
+	 * <p>
+	 * precondition: keys is strictly sorted, keys.length == values.length
+	 */
+	FrozenWAVLTree(int[] keys, String[] values) {
+		this.keys = keys;
+		this.values = values;
+		this.eytzinger = new int[keys.length + 1];
+		this.position = new int[keys.length + 1];
+		fill(0, 1);
+	}
+
+	private int fill(int next, int slot) {//in-order walk of the implicit tree, taking sorted keys one by one
+		if (slot > this.keys.length)
+			return next;
+		next = fill(next, 2 * slot);
+		this.eytzinger[slot] = this.keys[next];
+		this.position[slot] = next;
+		return fill(next + 1, 2 * slot + 1);
+	}
+
+	/**
+	 * private int lowerBound(int k)
+	 * <p>
+	 * returns the index in keys of the smallest key not below k, or size() if there is none.
+	 * every level goes left or right by the comparison result, which the JIT turns into a conditional move.
+	 * on the way down, the slot's bits record the turns taken, and shifting out the trailing right turns
+	 * (and the last left turn) gives back the slot of the answer
+	 */
+	private int lowerBound(int k) {
+		int[] tree = this.eytzinger;
+		int n = this.keys.length;
+		int slot = 1;
+		while (slot <= n)
+			slot = 2 * slot + (tree[slot] < k ? 1 : 0);
+		slot >>>= Integer.numberOfTrailingZeros(~slot) + 1;
+		return slot == 0 ? n : this.position[slot];
+	}
+
+	/**
+	 * public boolean empty()
+	 * <p>
+	 * returns true if and only if the tree is empty
+	 */
+	public boolean empty() {
+		return this.keys.length == 0;
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of items in the tree.
+	 */
+	public int size() {
+		return this.keys.length;
+	}
+
+	/**
+	 * public String search(int k)
+	 * <p>
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+	public String search(int k) {
+		int j = lowerBound(k);
+		if (j == this.keys.length || this.keys[j] != k) // meaning k wasn't found
+			return null;
+		return this.values[j];
+	}
+
+	/**
+	 * public String min()
+	 * <p>
+	 * Returns the info of the item with the smallest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public String min() {
+		return this.keys.length == 0 ? null : this.values[0];
+	}
+
+	/**
+	 * public String max()
+	 * <p>
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public String max() {
+		return this.keys.length == 0 ? null : this.values[this.keys.length - 1];
+	}
+
+	/**
+	 * public String select(int i)
+	 * <p>
+	 * Returns the value of the i'th smallest key (null if there is none). O(1)
+	 */
+	public String select(int i) {
+		if (i <= 0 || i > this.keys.length)
+			return null;
+		return this.values[i - 1];
+	}
+
+	/**
+	 * public int rank(int k)
+	 * <p>
+	 * Returns the number of keys in the tree smaller than k, same as WAVLTree.rank(k)
+	 */
+	public int rank(int k) {
+		return lowerBound(k);
+	}
+
+	/**
+	 * public int countInRange(int lo, int hi)
+	 * <p>
+	 * Returns the number of keys in the tree between lo and hi, both included,
+	 * or 0 if lo > hi
+	 */
+	public int countInRange(int lo, int hi) {
+		if (lo > hi)
+			return 0;
+		int to = hi == Integer.MAX_VALUE ? this.keys.length : lowerBound(hi + 1);
+		return to - lowerBound(lo);
+	}
+
+	/**
+	 * public int range(int lo, int hi, int[] keys, String[] values)
+	 * <p>
+	 * copies the items with keys between lo and hi, both included, in ascending order,
+	 * into keys and values (either may be null), up to the length of the shorter one.
+	 * returns the number of items copied
+	 */
+	public int range(int lo, int hi, int[] keys, String[] values) {
+		if (lo > hi)
+			return 0;
+		int capacity = Math.min(keys == null ? Integer.MAX_VALUE : keys.length, values == null ? Integer.MAX_VALUE : values.length);
+		int from = lowerBound(lo);
+		int to = hi == Integer.MAX_VALUE ? this.keys.length : lowerBound(hi + 1);
+		int count = Math.min(to - from, capacity);
+		if (keys != null)
+			System.arraycopy(this.keys, from, keys, 0, count);
+		if (values != null)
+			System.arraycopy(this.values, from, values, 0, count);
+		return count;
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 * <p>
+	 * Returns a sorted array which contains all keys in the tree,
+	 * or an empty array if the tree is empty.
+	 */
+	public int[] keysToArray() {
+		return this.keys.clone();
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 * <p>
+	 * Returns an array which contains all info in the tree,
+	 * sorted by their respective keys,
+	 * or an empty array if the tree is empty.
+	 */
+	public String[] infoToArray() {
+		return this.values.clone();
+	}
+}
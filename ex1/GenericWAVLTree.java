@@ -0,0 +1,151 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * GenericWAVLTree
+ * <p>
+ * A WAVL Tree with distinct keys of any type, ordered by a Comparator, and info of any type.
+ * rebalancing is shared with the other variants, in AbstractWAVLTree.
+ */
+
+public class GenericWAVLTree<K, V> extends AbstractWAVLTree<GenericWAVLTree.GenericNode<K, V>> {
+
+	private final Comparator<? super K> comparator;
+
+	public GenericWAVLTree(Comparator<? super K> comparator) {
+		this.comparator = comparator;
+	}
+
+	/**
+	 * private GenericNode<K, V> searchNode(K k)
+	 * <p>
+	 * returns the node with key k if it exists in the tree
+	 * otherwise, returns the last real node encountered (null if tree is empty)
+	 */
+	private GenericNode<K, V> searchNode(K k) {
+		GenericNode<K, V> node = this.root;
+		GenericNode<K, V> last = null;
+		while (node != null) {
+			int cmp = this.comparator.compare(node.key, k);
+			if (cmp == 0)
+				return node;
+			last = node;
+			node = cmp < 0 ? node.right : node.left;
+		}
+		return last;
+	}
+
+	/**
+	 * public V search(K k)
+	 * <p>
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+	public V search(K k) {
+		GenericNode<K, V> loc = this.searchNode(k);
+		if (loc == null || this.comparator.compare(loc.key, k) != 0) // meaning k wasn't found
+			return null;
+		return loc.value;
+	}
+
+	/**
+	 * public int insert(K k, V i)
+	 * <p>
+	 * inserts an item with key k and info i to the WAVL tree.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+	 * returns -1 if an item with key k already exists in the tree.
+	 */
+	public int insert(K k, V i) {
+		GenericNode<K, V> insertPoint = this.searchNode(k);
+		int cmp = insertPoint == null ? 0 : this.comparator.compare(k, insertPoint.key);
+		if (insertPoint != null && cmp == 0) // key already in tree
+			return -1;
+		return this.attach(new GenericNode<>(k, i), insertPoint, cmp < 0);
+	}
+
+	/**
+	 * public int delete(K k)
+	 * <p>
+	 * deletes an item with key k from the binary tree, if it is there.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
+	 * returns -1 if an item with key k was not found in the tree.
+	 */
+	public int delete(K k) {
+		GenericNode<K, V> toDelete = this.searchNode(k);
+		if (toDelete == null || this.comparator.compare(toDelete.key, k) != 0) // key not in tree
+			return -1;
+		return this.remove(toDelete);
+	}
+
+	protected void copyPayload(GenericNode<K, V> from, GenericNode<K, V> to) {
+		to.key = from.key;
+		to.value = from.value;
+	}
+
+	/**
+	 * public V min()
+	 * <p>
+	 * Returns the info of the item with the smallest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public V min() {
+		return this.MIN == null ? null : this.MIN.value;
+	}
+
+	/**
+	 * public V max()
+	 * <p>
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public V max() {
+		return this.MAX == null ? null : this.MAX.value;
+	}
+
+	/**
+	 * public V select(int i)
+	 * <p>
+	 * Returns the value of the i'th smallest key (null if there is none)
+	 * precondition: size() >= i > 0
+	 */
+	public V select(int i) {
+		GenericNode<K, V> node = this.selectNode(i);
+		return node == null ? null : node.value;
+	}
+
+	/**
+	 * public List<K> keysToList()
+	 * <p>
+	 * Returns a sorted list which contains all keys in the tree
+	 */
+	public List<K> keysToList() {
+		List<K> list = new ArrayList<>(this.size());
+		for (GenericNode<K, V> x = this.MIN; x != null; x = this.successor(x))
+			list.add(x.key);
+		return list;
+	}
+
+	/**
+	 * public List<V> infoToList()
+	 * <p>
+	 * Returns a list which contains all info in the tree,
+	 * sorted by their respective keys
+	 */
+	public List<V> infoToList() {
+		List<V> list = new ArrayList<>(this.size());
+		for (GenericNode<K, V> x = this.MIN; x != null; x = this.successor(x))
+			list.add(x.value);
+		return list;
+	}
+
+	static final class GenericNode<K, V> extends AbstractWAVLTree.Node<GenericNode<K, V>> {
+		private K key;
+		private V value;
+
+		private GenericNode(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * LongWAVLTree
+ * <p>
+ * A WAVL Tree with distinct primitive long keys and info of any type.
+ * keys are stored and compared as longs, never boxed.
+ * rebalancing is shared with the other variants, in AbstractWAVLTree.
+ */
+
+public class LongWAVLTree<V> extends AbstractWAVLTree<LongWAVLTree.LongNode<V>> {
+
+	/**
+	 * private LongNode<V> searchNode(long k)
+	 * <p>
+	 * returns the node with key k if it exists in the tree
+	 * otherwise, returns the last real node encountered (null if tree is empty)
+	 */
+	private LongNode<V> searchNode(long k) {
+		LongNode<V> node = this.root;
+		LongNode<V> last = null;
+		while (node != null) {
+			if (node.key == k)
+				return node;
+			last = node;
+			node = node.key < k ? node.right : node.left;
+		}
+		return last;
+	}
+
+	/**
+	 * public V search(long k)
+	 * <p>
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+	public V search(long k) {
+		LongNode<V> loc = this.searchNode(k);
+		if (loc == null || loc.key != k) // meaning k wasn't found
+			return null;
+		return loc.value;
+	}
+
+	/**
+	 * public int insert(long k, V i)
+	 * <p>
+	 * inserts an item with key k and info i to the WAVL tree.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+	 * returns -1 if an item with key k already exists in the tree.
+	 */
+	public int insert(long k, V i) {
+		LongNode<V> insertPoint = this.searchNode(k);
+		if (insertPoint != null && insertPoint.key == k) // key already in tree
+			return -1;
+		return this.attach(new LongNode<>(k, i), insertPoint, insertPoint != null && k < insertPoint.key);
+	}
+
+	/**
+	 * public int delete(long k)
+	 * <p>
+	 * deletes an item with key k from the binary tree, if it is there.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
+	 * returns -1 if an item with key k was not found in the tree.
+	 */
+	public int delete(long k) {
+		LongNode<V> toDelete = this.searchNode(k);
+		if (toDelete == null || toDelete.key != k) // key not in tree
+			return -1;
+		return this.remove(toDelete);
+	}
+
+	protected void copyPayload(LongNode<V> from, LongNode<V> to) {
+		to.key = from.key;
+		to.value = from.value;
+	}
+
+	/**
+	 * public V min()
+	 * <p>
+	 * Returns the info of the item with the smallest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public V min() {
+		return this.MIN == null ? null : this.MIN.value;
+	}
+
+	/**
+	 * public V max()
+	 * <p>
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public V max() {
+		return this.MAX == null ? null : this.MAX.value;
+	}
+
+	/**
+	 * public V select(int i)
+	 * <p>
+	 * Returns the value of the i'th smallest key (null if there is none)
+	 * precondition: size() >= i > 0
+	 */
+	public V select(int i) {
+		LongNode<V> node = this.selectNode(i);
+		return node == null ? null : node.value;
+	}
+
+	/**
+	 * public long selectKey(int i)
+	 * <p>
+	 * Returns the i'th smallest key. O(log i), like select(i).
+	 * throws NoSuchElementException if there is none
+	 */
+	public long selectKey(int i) {
+		LongNode<V> node = this.selectNode(i);
+		if (node == null)
+			throw new NoSuchElementException();
+		return node.key;
+	}
+
+	/**
+	 * public long[] keysToArray()
+	 * <p>
+	 * Returns a sorted array which contains all keys in the tree,
+	 * or an empty array if the tree is empty.
+	 */
+	public long[] keysToArray() {
+		long[] arr = new long[this.size()];
+		LongNode<V> x = this.MIN;
+		for (int j = 0; j < arr.length; j++, x = this.successor(x))
+			arr[j] = x.key;
+		return arr;
+	}
+
+	/**
+	 * public List<V> infoToList()
+	 * <p>
+	 * Returns a list which contains all info in the tree,
+	 * sorted by their respective keys
+	 */
+	public List<V> infoToList() {
+		List<V> list = new ArrayList<>(this.size());
+		for (LongNode<V> x = this.MIN; x != null; x = this.successor(x))
+			list.add(x.value);
+		return list;
+	}
+
+	static final class LongNode<V> extends AbstractWAVLTree.Node<LongNode<V>> {
+		private long key;
+		private V value;
+
+		private LongNode(long key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,608 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedWAVLTree
+ * <p>
+ * A WAVL Tree with distinct integer keys and info, kept outside the Java heap in two memory-mapped files:
+ * <p>
+ * - the nodes file: a header, then fixed-size records of 8 ints
+ * (key, left, right, parent, rank, size, info offset, info length),
+ * linked by record ids. id 0 is the external leaf shared by all nodes.
+ * - the info file (same name with ".values" appended): the UTF-8 bytes of all info strings, appended one after the other.
+ * <p>
+ * reopening the files only maps them again, there is nothing to rebuild.
+ * ids of deleted nodes are reused, but bytes of deleted info are not reclaimed.
+ * changes reach the files through the mapping, force() writes them to disk.
+ * each file is limited to 2GB, as a MappedByteBuffer is.
+ */
+
+public class MappedWAVLTree implements Closeable {
+
+	private static final int MAGIC = 0x5741564c; // "WAVL"
+	private static final int VERSION = 1;
+	private static final int HEADER = 16; // ints in the header, also where record 0 starts
+	private static final int RECORD = 8; // ints in a record
+	private static final int EXT = 0; // id of the external leaf
+
+	private static final int KEY = 0; // record fields
+	private static final int LEFT = 1;
+	private static final int RIGHT = 2;
+	private static final int PARENT = 3;
+	private static final int RANK = 4;
+	private static final int SIZE = 5;
+	private static final int VALUE_OFFSET = 6;
+	private static final int VALUE_LENGTH = 7;
+
+	private static final int H_MAGIC = 0; // header fields
+	private static final int H_VERSION = 1;
+	private static final int H_CAPACITY = 2;
+	private static final int H_NEXT = 3;
+	private static final int H_FREE = 4;
+	private static final int H_ROOT = 5;
+	private static final int H_MIN = 6;
+	private static final int H_MAX = 7;
+	private static final int H_VALUE_END = 8;
+
+	private final FileChannel nodesChannel;
+	private final FileChannel valuesChannel;
+	private MappedByteBuffer nodesMap;
+	private IntBuffer nodes;
+	private MappedByteBuffer values;
+	private int capacity; // number of records the nodes file holds
+	private int next; // first id that was never used
+	private int free; // head of free ids list, linked through RIGHT
+	private int root;
+	private int MIN;
+	private int MAX;
+	private int valueEnd; // where the next info is appended
+
+	/**
+	 * public MappedWAVLTree(Path path)
+	 * <p>
+	 * opens the tree stored at path (and path + ".values"), creating an empty one if the files don't exist
+	 */
+	public MappedWAVLTree(Path path) throws IOException {
+		this.nodesChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.valuesChannel = FileChannel.open(path.resolveSibling(path.getFileName() + ".values"),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (this.nodesChannel.size() == 0) { // new tree
+			this.capacity = 16;
+			this.mapNodes();
+			this.mapValues(1024);
+			this.next = 1;
+			this.free = EXT;
+			this.root = EXT;
+			this.MIN = EXT;
+			this.MAX = EXT;
+			this.valueEnd = 0;
+			this.set(EXT, KEY, -1);
+			this.set(EXT, RANK, -1); // external leaf has rank -1 and size 0
+			this.set(EXT, SIZE, 0);
+			this.writeHeader();
+			return;
+		}
+		this.capacity = (int) ((this.nodesChannel.size() / Integer.BYTES - HEADER) / RECORD);
+		this.mapNodes();
+		this.mapValues((int) this.valuesChannel.size());
+		if (this.nodes.get(H_MAGIC) != MAGIC || this.nodes.get(H_VERSION) != VERSION)
+			throw new IOException("not a MappedWAVLTree file: " + path);
+		this.capacity = this.nodes.get(H_CAPACITY);
+		this.next = this.nodes.get(H_NEXT);
+		this.free = this.nodes.get(H_FREE);
+		this.root = this.nodes.get(H_ROOT);
+		this.MIN = this.nodes.get(H_MIN);
+		this.MAX = this.nodes.get(H_MAX);
+		this.valueEnd = this.nodes.get(H_VALUE_END);
+	}
+
+	private void mapNodes() throws IOException {
+		this.nodesMap = this.nodesChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+				(HEADER + (long) this.capacity * RECORD) * Integer.BYTES);
+		this.nodes = this.nodesMap.asIntBuffer();
+	}
+
+	private void mapValues(int size) throws IOException {
+		this.values = this.valuesChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+	}
+
+	private void writeHeader() {//called at the end of every update, so the files are always self-describing
+		this.nodes.put(H_MAGIC, MAGIC);
+		this.nodes.put(H_VERSION, VERSION);
+		this.nodes.put(H_CAPACITY, this.capacity);
+		this.nodes.put(H_NEXT, this.next);
+		this.nodes.put(H_FREE, this.free);
+		this.nodes.put(H_ROOT, this.root);
+		this.nodes.put(H_MIN, this.MIN);
+		this.nodes.put(H_MAX, this.MAX);
+		this.nodes.put(H_VALUE_END, this.valueEnd);
+	}
+
+	private int get(int node, int field) {
+		return this.nodes.get(HEADER + node * RECORD + field);
+	}
+
+	private void set(int node, int field, int value) {
+		this.nodes.put(HEADER + node * RECORD + field, value);
+	}
+
+	/**
+	 * public void force()
+	 * <p>
+	 * writes all changes to the files to disk
+	 */
+	public void force() {
+		this.nodesMap.force();
+		this.values.force();
+	}
+
+	/**
+	 * public void close()
+	 * <p>
+	 * forces all changes to disk and closes the files. the tree must not be used afterwards
+	 */
+	public void close() throws IOException {
+		this.force();
+		this.nodesChannel.close();
+		this.valuesChannel.close();
+	}
+
+	/**
+	 * public boolean empty()
+	 * <p>
+	 * returns true if and only if the tree is empty
+	 */
+	public boolean empty() {
+		return this.root == EXT;
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of nodes in the tree.
+	 */
+	public int size() {
+		return this.get(this.root, SIZE);
+	}
+
+	/**
+	 * private String value(int node)
+	 * <p>
+	 * decodes node's info from the info file
+	 */
+	private String value(int node) {
+		int length = this.get(node, VALUE_LENGTH);
+		if (length < 0) // null info
+			return null;
+		byte[] bytes = new byte[length];
+		this.values.get(this.get(node, VALUE_OFFSET), bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * private void appendValue(int node, String i)
+	 * <p>
+	 * appends i's bytes to the info file, growing it if needed, and points node to them
+	 */
+	private void appendValue(int node, String i) {
+		if (i == null) {
+			this.set(node, VALUE_OFFSET, 0);
+			this.set(node, VALUE_LENGTH, -1);
+			return;
+		}
+		byte[] bytes = i.getBytes(StandardCharsets.UTF_8);
+		if ((long) this.valueEnd + bytes.length > this.values.capacity()) {
+			long size = Math.max((long) this.values.capacity() * 2, (long) this.valueEnd + bytes.length);
+			if (size > Integer.MAX_VALUE)
+				throw new IllegalStateException("info file is full");
+			try {
+				this.mapValues((int) size);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		this.values.put(this.valueEnd, bytes);
+		this.set(node, VALUE_OFFSET, this.valueEnd);
+		this.set(node, VALUE_LENGTH, bytes.length);
+		this.valueEnd += bytes.length;
+	}
+
+	/**
+	 * private int newNode(int k, String i)
+	 * <p>
+	 * returns the id of a fresh leaf with key k and info i,
+	 * reusing a deleted id if there is one, and growing the nodes file if needed
+	 */
+	private int newNode(int k, String i) {
+		int node;
+		if (this.free != EXT) { // reuse a deleted id
+			node = this.free;
+			this.free = this.get(node, RIGHT);
+		} else {
+			if (this.next == this.capacity) {
+				if ((HEADER + (long) this.capacity * 2 * RECORD) * Integer.BYTES > Integer.MAX_VALUE)
+					throw new IllegalStateException("nodes file is full");
+				this.capacity *= 2;
+				try {
+					this.mapNodes();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			node = this.next++;
+		}
+		this.set(node, KEY, k);
+		this.set(node, LEFT, EXT);
+		this.set(node, RIGHT, EXT);
+		this.set(node, PARENT, EXT);
+		this.set(node, RANK, 0);
+		this.set(node, SIZE, 1);
+		this.appendValue(node, i);
+		return node;
+	}
+
+	private void releaseNode(int node) {//puts an unlinked node's id in the free list
+		this.set(node, PARENT, EXT);
+		this.set(node, LEFT, EXT);
+		this.set(node, RIGHT, this.free);
+		this.free = node;
+	}
+
+	/**
+	 * private int searchNode(int k)
+	 * <p>
+	 * iteratively returns the id of the node with key k if it exists in the tree
+	 * otherwise, returns the last real node encountered (EXT if tree is empty)
+	 */
+	private int searchNode(int k) {
+		int node = this.root;
+		int last = EXT;
+		while (node != EXT) {
+			int key = this.get(node, KEY);
+			if (key == k)
+				return node;
+			last = node;
+			node = this.get(node, key < k ? RIGHT : LEFT);
+		}
+		return last;
+	}
+
+	/**
+	 * public String search(int k)
+	 * <p>
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+	public String search(int k) {
+		int loc = this.searchNode(k);
+		if (loc == EXT || this.get(loc, KEY) != k) // meaning k wasn't found
+			return null;
+		return this.value(loc);
+	}
+
+	/**
+	 * private void rotate(int node)
+	 * <p>
+	 * performs a rotation moving node above its parent, by reassigning parents and children.
+	 * right rotation if node is a left child, left rotation otherwise.
+	 * does not promote or demote nodes
+	 */
+	private void rotate(int node) {
+		int parent = this.get(node, PARENT);
+		int grandParent = this.get(parent, PARENT);
+		boolean isLeft = this.get(parent, LEFT) == node;
+		int inner = this.get(node, isLeft ? RIGHT : LEFT);
+		this.set(parent, isLeft ? LEFT : RIGHT, inner);
+		if (inner != EXT)
+			this.set(inner, PARENT, parent);
+		this.set(node, isLeft ? RIGHT : LEFT, parent);
+		this.set(parent, PARENT, node);
+		this.set(node, PARENT, grandParent);
+		if (grandParent == EXT)
+			this.root = node;
+		else if (this.get(grandParent, LEFT) == parent)
+			this.set(grandParent, LEFT, node);
+		else
+			this.set(grandParent, RIGHT, node);
+		this.set(node, SIZE, this.get(parent, SIZE));
+		this.set(parent, SIZE, this.get(this.get(parent, LEFT), SIZE) + this.get(this.get(parent, RIGHT), SIZE) + 1);
+	}
+
+	private int rank(int node) {
+		return this.get(node, RANK);
+	}
+
+	private void addRank(int node, int delta) {
+		this.set(node, RANK, this.get(node, RANK) + delta);
+	}
+
+	/**
+	 * private int insertRebalance(int node)
+	 * <p>
+	 * performs the different rebalancing operations on the tree,
+	 * following an insertion, until it is a balanced WAVL tree again.
+	 * returns the number of rebalancing operations performed, counted as in WAVLTree
+	 */
+	private int insertRebalance(int node) {
+		int rebalances = 0;
+		int parent = this.get(node, PARENT);
+		while (parent != EXT && this.rank(parent) == this.rank(node)) { // node is a 0-child
+			boolean isLeft = this.get(parent, LEFT) == node;
+			int sibling = this.get(parent, isLeft ? RIGHT : LEFT);
+			if (this.rank(parent) - this.rank(sibling) == 1) { // case 1, promote and go up
+				this.addRank(parent, 1);
+				rebalances++;
+				node = parent;
+				parent = this.get(node, PARENT);
+				continue;
+			}
+			int inner = this.get(node, isLeft ? RIGHT : LEFT);
+			if (this.rank(node) - this.rank(inner) == 2) { // case 2, single rotation
+				this.rotate(node);
+				this.addRank(parent, -1);
+				return rebalances + 2;
+			}
+			this.rotate(inner); // case 3, double rotation around node's inner child
+			this.rotate(inner);
+			this.addRank(node, -1);
+			this.addRank(parent, -1);
+			this.addRank(inner, 1);
+			return rebalances + 5;
+		}
+		return rebalances; // get here if promotions were enough
+	}
+
+	/**
+	 * public int insert(int k, String i)
+	 * <p>
+	 * inserts an item with key k and info i to the WAVL tree.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+	 * returns -1 if an item with key k already exists in the tree.
+	 */
+	public int insert(int k, String i) {
+		int rebalances = 0;
+		if (this.root == EXT) { // tree is empty
+			this.root = this.newNode(k, i);
+			this.MIN = this.root;
+			this.MAX = this.root;
+		} else {
+			int insertPoint = this.searchNode(k);
+			if (this.get(insertPoint, KEY) == k) // key already in tree
+				return -1;
+			int node = this.newNode(k, i);
+			this.set(node, PARENT, insertPoint);
+			this.set(insertPoint, k < this.get(insertPoint, KEY) ? LEFT : RIGHT, node);
+			if (k < this.get(this.MIN, KEY))
+				this.MIN = node;
+			if (k > this.get(this.MAX, KEY))
+				this.MAX = node;
+			for (int x = insertPoint; x != EXT; x = this.get(x, PARENT)) // increase all needed subtree sizes
+				this.set(x, SIZE, this.get(x, SIZE) + 1);
+			rebalances = this.insertRebalance(node);
+		}
+		this.writeHeader();
+		return rebalances;
+	}
+
+	/**
+	 * private int deleteRebalance(int node)
+	 * <p>
+	 * rebalances tree, starting with node, the parent of the removed node,
+	 * and returns the number of rebalancing operations performed, counted as in WAVLTree
+	 */
+	private int deleteRebalance(int node) {
+		int rebalances = 0;
+		if (this.rank(node) - this.rank(this.get(node, LEFT)) == 2 && this.rank(node) - this.rank(this.get(node, RIGHT)) == 2) { // node became a (2,2), demote it like WAVLTree
+			this.addRank(node, -1);
+			rebalances++;
+			node = this.get(node, PARENT);
+		}
+		while (node != EXT) {
+			int leftDiff = this.rank(node) - this.rank(this.get(node, LEFT));
+			int rightDiff = this.rank(node) - this.rank(this.get(node, RIGHT));
+			if (leftDiff != 3 && rightDiff != 3) // no 3-child, tree is valid
+				break;
+			boolean leftShort = leftDiff == 3;
+			int sibling = this.get(node, leftShort ? RIGHT : LEFT);
+			if ((leftShort ? rightDiff : leftDiff) == 2) { // case 1, demote and go up
+				this.addRank(node, -1);
+				rebalances++;
+				node = this.get(node, PARENT);
+				continue;
+			}
+			int outer = this.get(sibling, leftShort ? RIGHT : LEFT);
+			int inner = this.get(sibling, leftShort ? LEFT : RIGHT);
+			int outerDiff = this.rank(sibling) - this.rank(outer);
+			if (outerDiff == 2 && this.rank(sibling) - this.rank(inner) == 2) { // case 2, double demote and go up
+				this.addRank(node, -1);
+				this.addRank(sibling, -1);
+				rebalances += 2;
+				node = this.get(node, PARENT);
+				continue;
+			}
+			if (outerDiff == 1) { // case 3, single rotation
+				this.rotate(sibling);
+				this.addRank(sibling, 1);
+				this.addRank(node, -1);
+				rebalances += 3;
+				if (this.get(node, LEFT) == EXT && this.get(node, RIGHT) == EXT && this.rank(node) == 1) { // a (2,2) leaf
+					this.addRank(node, -1);
+					rebalances++;
+				}
+				return rebalances;
+			}
+			this.rotate(inner); // case 4, double rotation around sibling's inner child
+			this.rotate(inner);
+			this.addRank(sibling, -1);
+			this.addRank(node, -2);
+			this.addRank(inner, 2);
+			return rebalances + 7;
+		}
+		return rebalances; // get here if demotions were enough
+	}
+
+	/**
+	 * public int delete(int k)
+	 * <p>
+	 * deletes an item with key k from the binary tree, if it is there.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
+	 * returns -1 if an item with key k was not found in the tree.
+	 */
+	public int delete(int k) {
+		int node = this.searchNode(k);
+		if (node == EXT || this.get(node, KEY) != k) // key not in tree
+			return -1;
+		int toRemove = node;
+		if (this.get(node, LEFT) != EXT && this.get(node, RIGHT) != EXT) { // two children, take successor's place
+			toRemove = this.minNode(this.get(node, RIGHT));
+			this.set(node, KEY, this.get(toRemove, KEY));
+			this.set(node, VALUE_OFFSET, this.get(toRemove, VALUE_OFFSET));
+			this.set(node, VALUE_LENGTH, this.get(toRemove, VALUE_LENGTH));
+			if (this.MAX == toRemove)
+				this.MAX = node;
+		} else if (this.get(node, PARENT) == EXT && (this.get(node, LEFT) != EXT || this.get(node, RIGHT) != EXT)) { // root of a 2-node tree
+			toRemove = this.get(node, LEFT) != EXT ? this.get(node, LEFT) : this.get(node, RIGHT); // take the child's place, like WAVLTree switches them
+			this.set(node, KEY, this.get(toRemove, KEY));
+			this.set(node, VALUE_OFFSET, this.get(toRemove, VALUE_OFFSET));
+			this.set(node, VALUE_LENGTH, this.get(toRemove, VALUE_LENGTH));
+			this.MIN = node;
+			this.MAX = node;
+		} else {
+			if (this.MIN == node)
+				this.MIN = this.successor(node);
+			if (this.MAX == node)
+				this.MAX = this.predecessor(node);
+		}
+		int child = this.get(toRemove, LEFT) != EXT ? this.get(toRemove, LEFT) : this.get(toRemove, RIGHT);
+		int parent = this.get(toRemove, PARENT);
+		if (child != EXT)
+			this.set(child, PARENT, parent);
+		if (parent == EXT)
+			this.root = child;
+		else if (this.get(parent, LEFT) == toRemove)
+			this.set(parent, LEFT, child);
+		else
+			this.set(parent, RIGHT, child);
+		this.releaseNode(toRemove);
+		for (int x = parent; x != EXT; x = this.get(x, PARENT)) // decrease all needed subtree sizes
+			this.set(x, SIZE, this.get(x, SIZE) - 1);
+		int rebalances = parent == EXT ? 0 : this.deleteRebalance(parent);
+		this.writeHeader();
+		return rebalances;
+	}
+
+	/**
+	 * public String min()
+	 * <p>
+	 * Returns the info of the item with the smallest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public String min() {
+		return this.MIN == EXT ? null : this.value(this.MIN);
+	}
+
+	/**
+	 * public String max()
+	 * <p>
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public String max() {
+		return this.MAX == EXT ? null : this.value(this.MAX);
+	}
+
+	/**
+	 * public String select(int i)
+	 * <p>
+	 * Returns the value of the i'th smallest key (null if tree is empty)
+	 * precondition: size() >= i > 0
+	 */
+	public String select(int i) {
+		if (i <= 0 || this.size() < i)
+			return null;
+		int x = this.MIN;
+		while (this.get(x, SIZE) < i) //find the LCA of the minimal key and i'th smallest key
+			x = this.get(x, PARENT);
+		while (true) {
+			int r = this.get(this.get(x, LEFT), SIZE) + 1;
+			if (i == r)
+				return this.value(x);
+			if (i < r) {
+				x = this.get(x, LEFT);
+			} else {
+				x = this.get(x, RIGHT);
+				i -= r;
+			}
+		}
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 * <p>
+	 * Returns a sorted array which contains all keys in the tree,
+	 * or an empty array if the tree is empty.
+	 */
+	public int[] keysToArray() {
+		int[] arr = new int[this.size()];
+		int x = this.MIN;
+		for (int j = 0; j < arr.length; j++, x = this.successor(x))
+			arr[j] = this.get(x, KEY);
+		return arr;
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 * <p>
+	 * Returns an array which contains all info in the tree,
+	 * sorted by their respective keys,
+	 * or an empty array if the tree is empty.
+	 */
+	public String[] infoToArray() {
+		String[] arr = new String[this.size()];
+		int x = this.MIN;
+		for (int j = 0; j < arr.length; j++, x = this.successor(x))
+			arr[j] = this.value(x);
+		return arr;
+	}
+
+	private int minNode(int node) {//keep going left, stop before external leaf
+		while (this.get(node, LEFT) != EXT)
+			node = this.get(node, LEFT);
+		return node;
+	}
+
+	private int maxNode(int node) {//keep going right, stop before external leaf
+		while (this.get(node, RIGHT) != EXT)
+			node = this.get(node, RIGHT);
+		return node;
+	}
+
+	private int successor(int x) {//works like algorithm shown in class
+		if (this.get(x, RIGHT) != EXT)
+			return this.minNode(this.get(x, RIGHT));
+		int y = this.get(x, PARENT);
+		while (y != EXT && x == this.get(y, RIGHT)) {
+			x = y;
+			y = this.get(x, PARENT);
+		}
+		return y;
+	}
+
+	private int predecessor(int x) {//same as successor, only symmetric
+		if (this.get(x, LEFT) != EXT)
+			return this.maxNode(this.get(x, LEFT));
+		int y = this.get(x, PARENT);
+		while (y != EXT && x == this.get(y, LEFT)) {
+			x = y;
+			y = this.get(x, PARENT);
+		}
+		return y;
+	}
+}
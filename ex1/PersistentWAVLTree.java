@@ -0,0 +1,408 @@
+/**
+ * PersistentWAVLTree
+ * <p>
+ * A persistent WAVL Tree with distinct integer keys and info.
+ * nodes are immutable and have no parent pointers: an update copies only the O(log n) nodes
+ * on the path it changes, and shares everything else with the previous version.
+ * <p>
+ * snapshot() is O(1): it returns another tree holding the current root, which later updates
+ * of either tree never touch. a version nothing refers to anymore is simply collected.
+ * a single tree must not be updated by two threads at once, but any number of threads
+ * may read snapshots while it is updated.
+ */
+
+public class PersistentWAVLTree {
+
+	private Node root;
+	private int rebalances; // rebalancing operations of the running update
+	private boolean found; // whether the running update found its key
+	private boolean unlinked; // whether a node was just unlinked, so the next fix is at its parent
+
+	public PersistentWAVLTree() {
+		this.root = null;
+	}
+
+	private PersistentWAVLTree(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * public PersistentWAVLTree snapshot()
+	 * <p>
+	 * Returns an independent tree holding the current version, in O(1)
+	 */
+	public PersistentWAVLTree snapshot() {
+		return new PersistentWAVLTree(this.root);
+	}
+
+	/**
+	 * public boolean empty()
+	 * <p>
+	 * returns true if and only if the tree is empty
+	 */
+	public boolean empty() {
+		return this.root == null;
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of nodes in the tree.
+	 */
+	public int size() {
+		return size(this.root);
+	}
+
+	private static int rank(Node node) {//external leaves are null, with rank -1
+		return node == null ? -1 : node.rank;
+	}
+
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	/**
+	 * public String search(int k)
+	 * <p>
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+	public String search(int k) {
+		Node node = this.root;
+		while (node != null) {
+			if (node.key == k)
+				return node.value;
+			node = node.key < k ? node.right : node.left;
+		}
+		return null;
+	}
+
+	/**
+	 * public int insert(int k, String i)
+	 * <p>
+	 * inserts an item with key k and info i, copying the path to it.
+	 * returns the number of rebalancing operations, counted as in WAVLTree.
+	 * returns -1 if an item with key k already exists in the tree.
+	 */
+	public int insert(int k, String i) {
+		this.rebalances = 0;
+		this.found = false;
+		Node newRoot = insert(this.root, k, i);
+		if (this.found)
+			return -1;
+		this.root = newRoot;
+		return this.rebalances;
+	}
+
+	private Node insert(Node node, int k, String i) {
+		if (node == null)
+			return new Node(k, i, null, null, 0);
+		if (node.key == k) {
+			this.found = true;
+			return node;
+		}
+		if (k < node.key) {
+			Node left = insert(node.left, k, i);
+			return this.found ? node : this.insertFixLeft(node, left);
+		}
+		Node right = insert(node.right, k, i);
+		return this.found ? node : this.insertFixRight(node, right);
+	}
+
+	/**
+	 * private Node insertFixLeft(Node node, Node left)
+	 * <p>
+	 * returns a copy of node with left as its new left subtree, after an insertion into it,
+	 * rebalanced if left became a 0-child: promote, single rotation or double rotation
+	 */
+	private Node insertFixLeft(Node node, Node left) {
+		Node right = node.right;
+		if (left.rank < node.rank) // no violation here, nothing more to fix above
+			return new Node(node.key, node.value, left, right, node.rank);
+		if (node.rank - rank(right) == 1) { // case 1, promote
+			this.rebalances++;
+			return new Node(node.key, node.value, left, right, node.rank + 1);
+		}
+		if (left.rank - rank(left.right) == 2) { // case 2, single rotation
+			this.rebalances += 2;
+			Node down = new Node(node.key, node.value, left.right, right, node.rank - 1);
+			return new Node(left.key, left.value, left.left, down, left.rank);
+		}
+		this.rebalances += 5; // case 3, double rotation
+		Node mid = left.right;
+		Node newLeft = new Node(left.key, left.value, left.left, mid.left, left.rank - 1);
+		Node newRight = new Node(node.key, node.value, mid.right, right, node.rank - 1);
+		return new Node(mid.key, mid.value, newLeft, newRight, mid.rank + 1);
+	}
+
+	private Node insertFixRight(Node node, Node right) {//same as insertFixLeft, only symmetric
+		Node left = node.left;
+		if (right.rank < node.rank)
+			return new Node(node.key, node.value, left, right, node.rank);
+		if (node.rank - rank(left) == 1) { // symmetric case 1
+			this.rebalances++;
+			return new Node(node.key, node.value, left, right, node.rank + 1);
+		}
+		if (right.rank - rank(right.left) == 2) { // symmetric case 2
+			this.rebalances += 2;
+			Node down = new Node(node.key, node.value, left, right.left, node.rank - 1);
+			return new Node(right.key, right.value, down, right.right, right.rank);
+		}
+		this.rebalances += 5; // symmetric case 3
+		Node mid = right.left;
+		Node newLeft = new Node(node.key, node.value, left, mid.left, node.rank - 1);
+		Node newRight = new Node(right.key, right.value, mid.right, right.right, right.rank - 1);
+		return new Node(mid.key, mid.value, newLeft, newRight, mid.rank + 1);
+	}
+
+	/**
+	 * public int delete(int k)
+	 * <p>
+	 * deletes an item with key k, if it is there, copying the path to it.
+	 * returns the number of rebalancing operations, counted as in WAVLTree.
+	 * returns -1 if an item with key k was not found in the tree.
+	 */
+	public int delete(int k) {
+		this.rebalances = 0;
+		this.found = false;
+		this.unlinked = false;
+		Node newRoot = delete(this.root, k);
+		if (!this.found)
+			return -1;
+		this.root = newRoot;
+		return this.rebalances;
+	}
+
+	private Node delete(Node node, int k) {
+		if (node == null) // k isn't in the tree
+			return null;
+		if (k < node.key) {
+			Node left = delete(node.left, k);
+			return this.found ? this.deleteFixLeft(node.key, node.value, left, node.right, node.rank) : node;
+		}
+		if (k > node.key) {
+			Node right = delete(node.right, k);
+			return this.found ? this.deleteFixRight(node.key, node.value, node.left, right, node.rank) : node;
+		}
+		this.found = true;
+		if (node == this.root && (node.left == null) != (node.right == null)) { // root of a 2-node tree
+			this.rebalances++; // WAVLTree switches it with its child, which is left a (2,2) leaf and demoted
+			return node.left == null ? node.right : node.left;
+		}
+		if (node.left == null || node.right == null) { // at most one child, which takes node's place
+			this.unlinked = true;
+			return node.left == null ? node.right : node.left;
+		}
+		Node successor = node.right; // two children, successor takes node's place
+		while (successor.left != null)
+			successor = successor.left;
+		Node right = delete(node.right, successor.key);
+		return this.deleteFixRight(successor.key, successor.value, node.left, right, node.rank);
+	}
+
+	/**
+	 * private Node deleteFixLeft(int key, String value, Node left, Node right, int rank)
+	 * <p>
+	 * returns a node with the given fields, after a deletion from left, rebalanced like WAVLTree's deleteRebalance():
+	 * the parent of the unlinked node is demoted if it became a (2,2),
+	 * and any node whose left became a 3-child is fixed by a demote, double demote, single rotation or double rotation
+	 */
+	private Node deleteFixLeft(int key, String value, Node left, Node right, int rank) {
+		if (this.unlinked) { // parent of the unlinked node
+			this.unlinked = false;
+			if (rank - rank(left) == 2 && rank - rank(right) == 2) {
+				this.rebalances++;
+				return new Node(key, value, left, right, rank - 1);
+			}
+		}
+		if (rank - rank(left) <= 2) // no violation here
+			return new Node(key, value, left, right, rank);
+		if (rank - rank(right) == 2) { // case 1, demote
+			this.rebalances++;
+			return new Node(key, value, left, right, rank - 1);
+		}
+		Node sibling = right;
+		int outerDiff = sibling.rank - rank(sibling.right);
+		if (outerDiff == 2 && sibling.rank - rank(sibling.left) == 2) { // case 2, double demote
+			this.rebalances += 2;
+			Node newSibling = new Node(sibling.key, sibling.value, sibling.left, sibling.right, sibling.rank - 1);
+			return new Node(key, value, left, newSibling, rank - 1);
+		}
+		if (outerDiff == 1) { // case 3, single rotation
+			this.rebalances += 3;
+			Node down = new Node(key, value, left, sibling.left, rank - 1);
+			if (down.left == null && down.right == null && down.rank == 1) { // a (2,2) leaf
+				this.rebalances++;
+				down = new Node(key, value, null, null, 0);
+			}
+			return new Node(sibling.key, sibling.value, down, sibling.right, sibling.rank + 1);
+		}
+		this.rebalances += 7; // case 4, double rotation
+		Node mid = sibling.left;
+		Node newLeft = new Node(key, value, left, mid.left, rank - 2);
+		Node newRight = new Node(sibling.key, sibling.value, mid.right, sibling.right, sibling.rank - 1);
+		return new Node(mid.key, mid.value, newLeft, newRight, mid.rank + 2);
+	}
+
+	private Node deleteFixRight(int key, String value, Node left, Node right, int rank) {//same as deleteFixLeft, only symmetric
+		if (this.unlinked) {
+			this.unlinked = false;
+			if (rank - rank(left) == 2 && rank - rank(right) == 2) {
+				this.rebalances++;
+				return new Node(key, value, left, right, rank - 1);
+			}
+		}
+		if (rank - rank(right) <= 2)
+			return new Node(key, value, left, right, rank);
+		if (rank - rank(left) == 2) { // symmetric case 1
+			this.rebalances++;
+			return new Node(key, value, left, right, rank - 1);
+		}
+		Node sibling = left;
+		int outerDiff = sibling.rank - rank(sibling.left);
+		if (outerDiff == 2 && sibling.rank - rank(sibling.right) == 2) { // symmetric case 2
+			this.rebalances += 2;
+			Node newSibling = new Node(sibling.key, sibling.value, sibling.left, sibling.right, sibling.rank - 1);
+			return new Node(key, value, newSibling, right, rank - 1);
+		}
+		if (outerDiff == 1) { // symmetric case 3
+			this.rebalances += 3;
+			Node down = new Node(key, value, sibling.right, right, rank - 1);
+			if (down.left == null && down.right == null && down.rank == 1) {
+				this.rebalances++;
+				down = new Node(key, value, null, null, 0);
+			}
+			return new Node(sibling.key, sibling.value, sibling.left, down, sibling.rank + 1);
+		}
+		this.rebalances += 7; // symmetric case 4
+		Node mid = sibling.right;
+		Node newLeft = new Node(sibling.key, sibling.value, sibling.left, mid.left, sibling.rank - 1);
+		Node newRight = new Node(key, value, mid.right, right, rank - 2);
+		return new Node(mid.key, mid.value, newLeft, newRight, mid.rank + 2);
+	}
+
+	/**
+	 * public String min()
+	 * <p>
+	 * Returns the info of the item with the smallest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public String min() {
+		Node node = this.root;
+		if (node == null)
+			return null;
+		while (node.left != null)
+			node = node.left;
+		return node.value;
+	}
+
+	/**
+	 * public String max()
+	 * <p>
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public String max() {
+		Node node = this.root;
+		if (node == null)
+			return null;
+		while (node.right != null)
+			node = node.right;
+		return node.value;
+	}
+
+	/**
+	 * public String select(int i)
+	 * <p>
+	 * Returns the value of the i'th smallest key (null if tree is empty)
+	 * precondition: size() >= i > 0
+	 */
+	public String select(int i) {
+		if (i <= 0 || this.size() < i)
+			return null;
+		Node node = this.root;
+		while (true) {
+			int r = size(node.left) + 1;
+			if (i == r)
+				return node.value;
+			if (i < r) {
+				node = node.left;
+			} else {
+				node = node.right;
+				i -= r;
+			}
+		}
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 * <p>
+	 * Returns a sorted array which contains all keys in the tree,
+	 * or an empty array if the tree is empty.
+	 */
+	public int[] keysToArray() {
+		int[] arr = new int[this.size()];
+		Node[] stack = new Node[rank(this.root) + 2]; // height is at most the rank
+		int top = 0;
+		int j = 0;
+		Node node = this.root;
+		while (node != null || top > 0) { // iterative inorder walk
+			while (node != null) {
+				stack[top++] = node;
+				node = node.left;
+			}
+			node = stack[--top];
+			arr[j++] = node.key;
+			node = node.right;
+		}
+		return arr;
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 * <p>
+	 * Returns an array which contains all info in the tree,
+	 * sorted by their respective keys,
+	 * or an empty array if the tree is empty.
+	 */
+	public String[] infoToArray() {
+		String[] arr = new String[this.size()];
+		Node[] stack = new Node[rank(this.root) + 2];
+		int top = 0;
+		int j = 0;
+		Node node = this.root;
+		while (node != null || top > 0) {
+			while (node != null) {
+				stack[top++] = node;
+				node = node.left;
+			}
+			node = stack[--top];
+			arr[j++] = node.value;
+			node = node.right;
+		}
+		return arr;
+	}
+
+	/**
+	 * private static final class Node
+	 * <p>
+	 * An immutable node. subtree size is computed once, from the children
+	 */
+	private static final class Node {
+		private final int key;
+		private final String value;
+		private final Node left;
+		private final Node right;
+		private final int rank;
+		private final int size;
+
+		private Node(int key, String value, Node left, Node right, int rank) {
+			this.key = key;
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			this.rank = rank;
+			this.size = size(left) + size(right) + 1;
+		}
+	}
+}
@@ -0,0 +1,436 @@
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * ShardedWAVLMap
+ * <p>
+ * A thread-safe ordered map of distinct int keys to info, range-partitioned into a fixed number of WAVLTree shards.
+ * shard j holds the keys in [lo(j), lo(j+1)), and has its own lock, so writers of different shards never meet.
+ * <p>
+ * shard boundaries start evenly spread over the int range, and move to follow the keys:
+ * after every REBALANCE_PERIOD writes to a shard, its writer compares the shard's size with its neighbours',
+ * and if they differ by more than a quarter, moves half the difference across their common boundary
+ * with WAVLTree.split() and join(), in O(log n).
+ * rebalance() evens out all shards at once, for example after loading skewed keys.
+ * <p>
+ * an operation finds its shard by binary searching the boundaries without a lock, then checks it again under
+ * the shard's lock, and retries if a rebalance moved the boundary in between.
+ * operations over all keys (size, select, iteration) take the read locks of all shards, in order.
+ */
+
+public class ShardedWAVLMap {
+
+	private static final int REBALANCE_PERIOD = 4096; // writes to a shard between checks of its neighbours
+	private static final int MIN_MOVE = 64; // don't move boundaries for fewer keys than this
+
+	private final Shard[] shards;
+
+	/**
+	 * public ShardedWAVLMap(int shardCount)
+	 * <p>
+	 * creates an empty map of shardCount shards, evenly covering the int range
+	 * <p>
+	 * precondition: shardCount > 0
+	 */
+	public ShardedWAVLMap(int shardCount) {
+		this.shards = new Shard[shardCount];
+		long width = ((1L << 32) + shardCount - 1) / shardCount;
+		for (int j = 0; j < shardCount; j++) {
+			long lo = Integer.MIN_VALUE + j * width;
+			long hi = j == shardCount - 1 ? Integer.MAX_VALUE + 1L : lo + width;
+			this.shards[j] = new Shard(j, lo, hi);
+		}
+	}
+
+	/**
+	 * private Shard route(int k)
+	 * <p>
+	 * returns the shard whose range held k when its boundaries were read.
+	 * takes no lock, so the caller must check the shard still covers k once it holds the shard's lock
+	 */
+	private Shard route(int k) {
+		int low = 0;
+		int high = this.shards.length - 1;
+		while (low < high) { // find the last shard with lo <= k
+			int mid = (low + high + 1) >>> 1;
+			if (this.shards[mid].lo <= k)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return this.shards[low];
+	}
+
+	/**
+	 * public String search(int k)
+	 * <p>
+	 * same as WAVLTree.search(k), under the read lock of k's shard
+	 */
+	public String search(int k) {
+		while (true) {
+			Shard shard = this.route(k);
+			long stamp = shard.lock.readLock();
+			try {
+				if (shard.covers(k))
+					return shard.tree.search(k);
+			} finally {
+				shard.lock.unlockRead(stamp);
+			}
+		}
+	}
+
+	/**
+	 * public int insert(int k, String i)
+	 * <p>
+	 * same as WAVLTree.insert(k, i), under the write lock of k's shard
+	 */
+	public int insert(int k, String i) {
+		while (true) {
+			Shard shard = this.route(k);
+			int result;
+			boolean check;
+			long stamp = shard.lock.writeLock();
+			try {
+				if (!shard.covers(k)) // a rebalance moved the boundary, route again
+					continue;
+				result = shard.tree.insert(k, i);
+				check = result != -1 && ++shard.writes % REBALANCE_PERIOD == 0;
+			} finally {
+				shard.lock.unlockWrite(stamp);
+			}
+			if (check)
+				this.balanceAround(shard.index);
+			return result;
+		}
+	}
+
+	/**
+	 * public int delete(int k)
+	 * <p>
+	 * same as WAVLTree.delete(k), under the write lock of k's shard
+	 */
+	public int delete(int k) {
+		while (true) {
+			Shard shard = this.route(k);
+			int result;
+			boolean check;
+			long stamp = shard.lock.writeLock();
+			try {
+				if (!shard.covers(k))
+					continue;
+				result = shard.tree.delete(k);
+				check = result != -1 && ++shard.writes % REBALANCE_PERIOD == 0;
+			} finally {
+				shard.lock.unlockWrite(stamp);
+			}
+			if (check)
+				this.balanceAround(shard.index);
+			return result;
+		}
+	}
+
+	/**
+	 * private void balanceAround(int j)
+	 * <p>
+	 * balances shard j with each of its neighbours, skipping any pair whose locks are taken,
+	 * so a writer never waits here
+	 */
+	private void balanceAround(int j) {
+		if (j > 0)
+			this.balancePair(j - 1);
+		if (j < this.shards.length - 1)
+			this.balancePair(j);
+	}
+
+	/**
+	 * private void balancePair(int j)
+	 * <p>
+	 * if the sizes of shards j and j+1 differ by more than a quarter of their total, moves keys across
+	 * their common boundary until both hold about the same number.
+	 * gives up instead of waiting if either lock is taken
+	 */
+	private void balancePair(int j) {
+		Shard left = this.shards[j];
+		Shard right = this.shards[j + 1];
+		long leftStamp = left.lock.tryWriteLock(); // always lock in shard order
+		if (leftStamp == 0)
+			return;
+		try {
+			long rightStamp = right.lock.tryWriteLock();
+			if (rightStamp == 0)
+				return;
+			try {
+				int leftSize = left.tree.size();
+				int rightSize = right.tree.size();
+				int move = Math.abs(leftSize - rightSize) / 2;
+				if (move < MIN_MOVE || 4 * Math.abs(leftSize - rightSize) <= leftSize + rightSize)
+					return;
+				int boundary;
+				if (leftSize > rightSize) { // left's biggest keys go right
+					boundary = left.tree.selectNode(left.tree.getRoot(), leftSize - move).getKey();
+					WAVLTree moved = left.tree.split(boundary);
+					moved.join(right.tree);
+					right.tree = moved;
+				} else { // right's smallest keys go left
+					boundary = right.tree.selectNode(right.tree.getRoot(), move).getKey();
+					WAVLTree rest = right.tree.split(boundary);
+					left.tree.join(right.tree);
+					right.tree = rest;
+				}
+				left.hi = boundary + 1L; // boundary itself stays on the left
+				right.lo = boundary + 1L;
+			} finally {
+				right.lock.unlockWrite(rightStamp);
+			}
+		} finally {
+			left.lock.unlockWrite(leftStamp);
+		}
+	}
+
+	/**
+	 * public void rebalance()
+	 * <p>
+	 * moves shard boundaries so all shards hold the same number of keys, give or take one,
+	 * unless there are fewer than MIN_MOVE keys per shard.
+	 * under the write locks of all shards, joins them into one tree and splits it again at the right ranks,
+	 * so it takes O(#shards * log n)
+	 */
+	public void rebalance() {
+		long[] stamps = new long[this.shards.length];
+		for (int j = 0; j < stamps.length; j++) // in shard order, like everyone else
+			stamps[j] = this.shards[j].lock.writeLock();
+		try {
+			long total = 0;
+			for (Shard shard : this.shards)
+				total += shard.tree.size();
+			if (total < (long) MIN_MOVE * this.shards.length)
+				return;
+			WAVLTree all = new WAVLTree();
+			for (Shard shard : this.shards) // every shard's keys are bigger than the ones before
+				all.join(shard.tree);
+			for (int j = this.shards.length - 1; j > 0; j--) { // split shards off the top
+				int keep = (int) (total * j / this.shards.length); // keys of shards 0..j-1
+				int boundary = all.selectNode(all.getRoot(), keep).getKey();
+				this.shards[j].tree = all.split(boundary);
+				this.shards[j].lo = boundary + 1L;
+				this.shards[j - 1].hi = boundary + 1L;
+			}
+			this.shards[0].tree = all;
+		} finally {
+			for (int j = stamps.length - 1; j >= 0; j--)
+				this.shards[j].lock.unlockWrite(stamps[j]);
+		}
+	}
+
+	private long[] readLockAll() {//in shard order, like writers, so nobody deadlocks
+		long[] stamps = new long[this.shards.length];
+		for (int j = 0; j < stamps.length; j++)
+			stamps[j] = this.shards[j].lock.readLock();
+		return stamps;
+	}
+
+	private void unlockAll(long[] stamps) {
+		for (int j = stamps.length - 1; j >= 0; j--)
+			this.shards[j].lock.unlockRead(stamps[j]);
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of items in the map, summing the shards' sizes under all read locks. O(#shards)
+	 */
+	public int size() {
+		long[] stamps = this.readLockAll();
+		try {
+			int size = 0;
+			for (Shard shard : this.shards)
+				size += shard.tree.size();
+			return size;
+		} finally {
+			this.unlockAll(stamps);
+		}
+	}
+
+	/**
+	 * public int shardCount()
+	 * <p>
+	 * Returns the number of shards
+	 */
+	public int shardCount() {
+		return this.shards.length;
+	}
+
+	/**
+	 * public int[] shardSizes()
+	 * <p>
+	 * Returns the number of items in each shard, in key order
+	 */
+	public int[] shardSizes() {
+		long[] stamps = this.readLockAll();
+		try {
+			int[] sizes = new int[this.shards.length];
+			for (int j = 0; j < sizes.length; j++)
+				sizes[j] = this.shards[j].tree.size();
+			return sizes;
+		} finally {
+			this.unlockAll(stamps);
+		}
+	}
+
+	/**
+	 * public String select(int i)
+	 * <p>
+	 * Returns the value of the i'th smallest key in the whole map (null if there is none).
+	 * skips whole shards by their sizes, then selects inside the shard holding it. O(#shards + log n)
+	 */
+	public String select(int i) {
+		if (i <= 0)
+			return null;
+		long[] stamps = this.readLockAll();
+		try {
+			for (Shard shard : this.shards) {
+				int size = shard.tree.size();
+				if (i <= size)
+					return shard.tree.select(i);
+				i -= size;
+			}
+			return null;
+		} finally {
+			this.unlockAll(stamps);
+		}
+	}
+
+	/**
+	 * public String min()
+	 * <p>
+	 * Returns the info of the item with the smallest key in the map,
+	 * or null if the map is empty
+	 */
+	public String min() {
+		long[] stamps = this.readLockAll();
+		try {
+			for (Shard shard : this.shards)
+				if (!shard.tree.empty())
+					return shard.tree.min();
+			return null;
+		} finally {
+			this.unlockAll(stamps);
+		}
+	}
+
+	/**
+	 * public String max()
+	 * <p>
+	 * Returns the info of the item with the largest key in the map,
+	 * or null if the map is empty
+	 */
+	public String max() {
+		long[] stamps = this.readLockAll();
+		try {
+			for (int j = this.shards.length - 1; j >= 0; j--)
+				if (!this.shards[j].tree.empty())
+					return this.shards[j].tree.max();
+			return null;
+		} finally {
+			this.unlockAll(stamps);
+		}
+	}
+
+	/**
+	 * public void forEach(ItemVisitor visitor)
+	 * <p>
+	 * calls visitor with every item of the map, in ascending key order.
+	 * holds the read locks of all shards throughout, so visitor sees a consistent map, but must not write to it
+	 */
+	public void forEach(ItemVisitor visitor) {
+		long[] stamps = this.readLockAll();
+		try {
+			for (Shard shard : this.shards) {
+				for (WAVLTree.Cursor cursor = shard.tree.cursor(); cursor.hasNext(); ) {
+					WAVLTree.IWAVLNode node = cursor.next();
+					visitor.visit(node.getKey(), node.getValue());
+				}
+			}
+		} finally {
+			this.unlockAll(stamps);
+		}
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 * <p>
+	 * Returns a sorted array which contains all keys in the map,
+	 * or an empty array if the map is empty.
+	 */
+	public int[] keysToArray() {
+		long[] stamps = this.readLockAll();
+		try {
+			int size = 0;
+			for (Shard shard : this.shards)
+				size += shard.tree.size();
+			int[] keys = new int[size];
+			int offset = 0;
+			for (Shard shard : this.shards)
+				offset += shard.tree.cursor().nextChunk(keys, null, offset, keys.length - offset);
+			return keys;
+		} finally {
+			this.unlockAll(stamps);
+		}
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 * <p>
+	 * Returns an array which contains all info in the map,
+	 * sorted by their respective keys,
+	 * or an empty array if the map is empty.
+	 */
+	public String[] infoToArray() {
+		long[] stamps = this.readLockAll();
+		try {
+			int size = 0;
+			for (Shard shard : this.shards)
+				size += shard.tree.size();
+			String[] values = new String[size];
+			int offset = 0;
+			for (Shard shard : this.shards)
+				offset += shard.tree.cursor().nextChunk(null, values, offset, values.length - offset);
+			return values;
+		} finally {
+			this.unlockAll(stamps);
+		}
+	}
+
+	/**
+	 * public interface ItemVisitor
+	 * <p>
+	 * receives the items of the map from forEach(), without boxing keys
+	 */
+	public interface ItemVisitor {
+		void visit(int key, String info);
+	}
+
+	/**
+	 * private static class Shard
+	 * <p>
+	 * one range of the map: a WAVLTree, its lock, and the range of keys it holds, [lo, hi).
+	 * lo and hi change only under the write locks of the shard and its neighbour, and are volatile so route() can read them
+	 */
+	private static final class Shard {
+		private final int index;
+		private final StampedLock lock = new StampedLock();
+		private WAVLTree tree = new WAVLTree();
+		private volatile long lo;
+		private volatile long hi;
+		private int writes = 0; // successful writes, counted under the write lock
+
+		private Shard(int index, long lo, long hi) {
+			this.index = index;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		private boolean covers(int k) {
+			return this.lo <= k && k < this.hi;
+		}
+	}
+}
@@ -0,0 +1,144 @@
+import java.util.NoSuchElementException;
+
+/**
+ * SlidingWindowQuantiles
+ * <p>
+ * Order statistics (median, p99, any quantile) over the last capacity values of a stream.
+ * the window is kept sorted in a LongWAVLTree, so push(), evict() and every query take O(log n),
+ * and the values in arrival order in a ring buffer, to know which one leaves next.
+ * <p>
+ * the tree's keys are distinct, so each value is stored as (value << 32) | sequence number:
+ * equal values differ in their low half, and keys still sort by value first.
+ * the low half is the arrival count mod 2^32, distinct for any window under 2^32 values.
+ */
+
+public class SlidingWindowQuantiles {
+
+	private final LongWAVLTree<Object> window = new LongWAVLTree<>();
+	private final int[] values; // ring buffer, in arrival order
+	private int oldest = 0; // index in values of the oldest value in the window
+	private int count = 0;
+	private int sequence = 0; // sequence number of the next value pushed, wraps around
+
+	/**
+	 * public SlidingWindowQuantiles(int capacity)
+	 * <p>
+	 * creates an empty window of the last capacity values
+	 * <p>
+	 * precondition: capacity > 0
+	 */
+	public SlidingWindowQuantiles(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		this.values = new int[capacity];
+	}
+
+	private static long key(int value, int sequence) {//sorts by value, then by sequence as an unsigned int
+		return ((long) value << 32) | (sequence & 0xffffffffL);
+	}
+
+	/**
+	 * public void push(int value)
+	 * <p>
+	 * adds value to the window, first evicting the oldest value if the window is full. O(log n)
+	 */
+	public void push(int value) {
+		if (this.count == this.values.length)
+			this.evict();
+		this.window.insert(key(value, this.sequence), null);
+		this.values[(this.oldest + this.count) % this.values.length] = value;
+		this.count++;
+		this.sequence++;
+	}
+
+	/**
+	 * public int evict()
+	 * <p>
+	 * removes the oldest value from the window and returns it. O(log n).
+	 * throws NoSuchElementException if the window is empty
+	 */
+	public int evict() {
+		if (this.count == 0)
+			throw new NoSuchElementException();
+		int value = this.values[this.oldest];
+		this.window.delete(key(value, this.sequence - this.count)); // the oldest came count pushes ago
+		this.oldest = (this.oldest + 1) % this.values.length;
+		this.count--;
+		return value;
+	}
+
+	/**
+	 * public int select(int i)
+	 * <p>
+	 * Returns the i'th smallest value in the window, counting equal values separately. O(log n).
+	 * throws NoSuchElementException if there is none
+	 */
+	public int select(int i) {
+		if (i <= 0 || i > this.count)
+			throw new NoSuchElementException();
+		return (int) (this.window.selectKey(i) >> 32);
+	}
+
+	/**
+	 * public int quantile(double q)
+	 * <p>
+	 * Returns the q quantile of the window by the nearest rank method:
+	 * the smallest value such that at least q of the window is not above it,
+	 * so quantile(0.5) is the lower median and quantile(1) the maximum. O(log n).
+	 * throws NoSuchElementException if the window is empty
+	 * <p>
+	 * precondition: 0 <= q <= 1
+	 */
+	public int quantile(double q) {
+		if (q < 0 || q > 1)
+			throw new IllegalArgumentException("quantile must be in [0, 1]: " + q);
+		return this.select(Math.max(1, (int) Math.ceil(q * this.count)));
+	}
+
+	/**
+	 * public int median()
+	 * <p>
+	 * Returns the lower median of the window, same as quantile(0.5)
+	 */
+	public int median() {
+		return this.quantile(0.5);
+	}
+
+	/**
+	 * public int min()
+	 * <p>
+	 * Returns the smallest value in the window.
+	 * throws NoSuchElementException if the window is empty
+	 */
+	public int min() {
+		return this.select(1);
+	}
+
+	/**
+	 * public int max()
+	 * <p>
+	 * Returns the largest value in the window.
+	 * throws NoSuchElementException if the window is empty
+	 */
+	public int max() {
+		return this.select(this.count);
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of values in the window
+	 */
+	public int size() {
+		return this.count;
+	}
+
+	/**
+	 * public int capacity()
+	 * <p>
+	 * Returns the most values the window holds
+	 */
+	public int capacity() {
+		return this.values.length;
+	}
+}
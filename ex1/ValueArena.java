@@ -0,0 +1,204 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * ValueArena
+ * <p>
+ * Packs info strings into shared 64KB byte[] pages, so a node keeps an int handle instead of a String.
+ * a value is stored as a varint header (length * 2, plus 1 if UTF-8) followed by its bytes:
+ * one byte per char when every char fits in Latin-1, like a compact String, and UTF-8 otherwise.
+ * values longer than a page get a page of their own.
+ * <p>
+ * handles index a table of locations (page * PAGE + offset), so compact() can move values without touching nodes.
+ * free() only counts the bytes as dead; once dead bytes outgrow live ones, the live values are copied
+ * into fresh pages and the old pages are dropped, which keeps the arena at most about twice its live size.
+ * freed handles are reused.
+ */
+
+final class ValueArena {
+
+	private static final int PAGE = 1 << 16;
+	private static final int MAX_PAGES = Integer.MAX_VALUE / PAGE; // locations must fit in an int
+
+	private byte[][] pages = new byte[16][];
+	private int pageCount = 0;
+	private int used = PAGE; // bytes used in the last page, full so the first add() opens a page
+	private int[] locations = new int[64]; // by handle, -1 if free
+	private int handles = 0; // handles ever given out
+	private int[] freeHandles = new int[16];
+	private int freeCount = 0;
+	private long liveBytes = 0;
+	private long deadBytes = 0;
+
+	/**
+	 * int add(String value)
+	 * <p>
+	 * stores value and returns its handle, or -1 if value is null
+	 */
+	int add(String value) {
+		if (value == null)
+			return -1;
+		boolean latin1 = true;
+		for (int j = 0; j < value.length() && latin1; j++)
+			latin1 = value.charAt(j) < 256;
+		byte[] utf8 = latin1 ? null : value.getBytes(StandardCharsets.UTF_8);
+		int length = latin1 ? value.length() : utf8.length;
+		long header = 2L * length + (latin1 ? 0 : 1);
+		int location = this.reserve(varintLength(header) + length);
+		byte[] page = this.pages[location / PAGE];
+		int offset = putVarint(page, location % PAGE, header);
+		if (latin1) {
+			for (int j = 0; j < length; j++)
+				page[offset + j] = (byte) value.charAt(j);
+		} else {
+			System.arraycopy(utf8, 0, page, offset, length);
+		}
+		return this.newHandle(location);
+	}
+
+	/**
+	 * String get(int handle)
+	 * <p>
+	 * decodes the value stored under handle, or returns null if handle is -1
+	 */
+	String get(int handle) {
+		if (handle < 0)
+			return null;
+		int location = this.locations[handle];
+		byte[] page = this.pages[location / PAGE];
+		long header = getVarint(page, location % PAGE);
+		int offset = location % PAGE + varintLength(header);
+		int length = (int) (header >>> 1);
+		return new String(page, offset, length, (header & 1) == 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * void free(int handle)
+	 * <p>
+	 * drops the value stored under handle (does nothing if handle is -1),
+	 * and compacts the arena once dead bytes outgrow live ones
+	 */
+	void free(int handle) {
+		if (handle < 0)
+			return;
+		int size = this.recordSize(this.locations[handle]);
+		this.liveBytes -= size;
+		this.deadBytes += size;
+		this.locations[handle] = -1;
+		if (this.freeCount == this.freeHandles.length)
+			this.freeHandles = Arrays.copyOf(this.freeHandles, 2 * this.freeCount);
+		this.freeHandles[this.freeCount++] = handle;
+		if (this.deadBytes > this.liveBytes && this.deadBytes >= PAGE)
+			this.compact();
+	}
+
+	/**
+	 * void compact()
+	 * <p>
+	 * copies all live values into fresh pages, in handle order, and drops the old pages. O(live bytes)
+	 */
+	void compact() {
+		byte[][] oldPages = this.pages;
+		this.pages = new byte[16][];
+		this.pageCount = 0;
+		this.used = PAGE;
+		this.liveBytes = 0;
+		this.deadBytes = 0;
+		for (int handle = 0; handle < this.handles; handle++) {
+			int location = this.locations[handle];
+			if (location < 0)
+				continue;
+			byte[] page = oldPages[location / PAGE];
+			int size = recordSize(page, location % PAGE);
+			int moved = this.reserve(size);
+			System.arraycopy(page, location % PAGE, this.pages[moved / PAGE], moved % PAGE, size);
+			this.locations[handle] = moved;
+		}
+	}
+
+	/**
+	 * long liveBytes()
+	 * <p>
+	 * returns the number of bytes taken by stored values, headers included
+	 */
+	long liveBytes() {
+		return this.liveBytes;
+	}
+
+	/**
+	 * long footprint()
+	 * <p>
+	 * returns the bytes the arena holds on to: its pages and its handle tables
+	 */
+	long footprint() {
+		long bytes = 4L * (this.locations.length + this.freeHandles.length);
+		for (int j = 0; j < this.pageCount; j++)
+			bytes += this.pages[j].length;
+		return bytes;
+	}
+
+	private int reserve(int size) {//returns the location of size new bytes, opening a page if needed
+		if (this.used + size > PAGE || size > PAGE) { // doesn't fit, open a page (of its own, if size is too big)
+			if (this.pageCount == MAX_PAGES)
+				throw new IllegalStateException("value arena is full");
+			if (this.pageCount == this.pages.length)
+				this.pages = Arrays.copyOf(this.pages, 2 * this.pageCount);
+			this.pages[this.pageCount++] = new byte[Math.max(PAGE, size)];
+			this.used = size >= PAGE ? PAGE : size; // nothing else goes on a big value's page
+			this.liveBytes += size;
+			return (this.pageCount - 1) * PAGE;
+		}
+		int location = (this.pageCount - 1) * PAGE + this.used;
+		this.used += size;
+		this.liveBytes += size;
+		return location;
+	}
+
+	private int newHandle(int location) {
+		int handle;
+		if (this.freeCount > 0) {
+			handle = this.freeHandles[--this.freeCount];
+		} else {
+			if (this.handles == this.locations.length)
+				this.locations = Arrays.copyOf(this.locations, 2 * this.handles);
+			handle = this.handles++;
+		}
+		this.locations[handle] = location;
+		return handle;
+	}
+
+	private int recordSize(int location) {
+		return recordSize(this.pages[location / PAGE], location % PAGE);
+	}
+
+	private static int recordSize(byte[] page, int offset) {//header and bytes of the value at offset
+		long header = getVarint(page, offset);
+		return varintLength(header) + (int) (header >>> 1);
+	}
+
+	private static long getVarint(byte[] page, int offset) {
+		long value = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte b = page[offset++];
+			value |= (long) (b & 0x7f) << shift;
+			if (b >= 0) // high bit clear, last byte
+				return value;
+		}
+	}
+
+	private static int varintLength(long value) {
+		int length = 1;
+		while ((value >>>= 7) != 0)
+			length++;
+		return length;
+	}
+
+	private static int putVarint(byte[] page, int offset, long value) {//returns the offset after the varint
+		while ((value & ~0x7fL) != 0) {
+			page[offset++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		page[offset++] = (byte) value;
+		return offset;
+	}
+}
@@ -0,0 +1,467 @@
+import java.util.Arrays;
+
+/**
+ * WAVLArrayTree
+ * <p>
+ * A WAVL Tree with distinct integer keys and info, that keeps its nodes
+ * in parallel primitive arrays (struct-of-arrays) instead of WAVLNode objects.
+ * <p>
+ * Every node is an int id indexing keys[], left[], right[], parent[], rank[] and size[],
+ * with the info kept in values[]. id 0 is the external leaf shared by all nodes.
+ * Ids of deleted nodes are kept in a free list (linked through right[]) and reused by insert.
+ * <p>
+ * insert and delete rebalance with their own copy of WAVLTree's insertRebalance() and deleteRebalance(),
+ * which must be kept in step with it: WAVLBenchmark.layouts() fails if the rebalancing counts differ.
+ */
+
+public class WAVLArrayTree {
+
+	private static final int EXT = 0; // id of the external leaf
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int[] keys;
+	private int[] left;
+	private int[] right;
+	private int[] parent;
+	private int[] rank;
+	private int[] size;
+	private String[] values;
+	private int root = EXT;
+	private int MIN = EXT;
+	private int MAX = EXT;
+	private int next = 1; // first id that was never used
+	private int free = EXT; // head of free ids list
+
+	public WAVLArrayTree() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public WAVLArrayTree(int capacity) {
+		capacity = Math.max(capacity, 1) + 1; // one more for the external leaf
+		this.keys = new int[capacity];
+		this.left = new int[capacity];
+		this.right = new int[capacity];
+		this.parent = new int[capacity];
+		this.rank = new int[capacity];
+		this.size = new int[capacity];
+		this.values = new String[capacity];
+		this.keys[EXT] = -1;
+		this.rank[EXT] = -1; // external leaf has rank -1 and size 0
+	}
+
+	/**
+	 * public boolean empty()
+	 * <p>
+	 * returns true if and only if the tree is empty
+	 */
+	public boolean empty() {
+		return this.root == EXT;
+	}
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of nodes in the tree.
+	 */
+	public int size() {
+		return this.size[this.root];
+	}
+
+	/**
+	 * private int searchNode(int k)
+	 * <p>
+	 * iteratively returns the id of the node with key k if it exists in the tree
+	 * otherwise, returns the last real node encountered (EXT if tree is empty)
+	 */
+	private int searchNode(int k) {
+		int node = this.root;
+		int last = EXT;
+		while (node != EXT) {
+			int key = this.keys[node];
+			if (key == k)
+				return node;
+			last = node;
+			node = key < k ? this.right[node] : this.left[node];
+		}
+		return last;
+	}
+
+	/**
+	 * public String search(int k)
+	 * <p>
+	 * returns the info of an item with key k if it exists in the tree
+	 * otherwise, returns null
+	 */
+	public String search(int k) {
+		int loc = searchNode(k);
+		if (loc == EXT || this.keys[loc] != k) // meaning k wasn't found
+			return null;
+		return this.values[loc];
+	}
+
+	/**
+	 * private int newNode(int k, String i)
+	 * <p>
+	 * returns the id of a fresh leaf with key k and info i,
+	 * reusing a deleted id if there is one, and growing the arrays if needed
+	 */
+	private int newNode(int k, String i) {
+		int node;
+		if (this.free != EXT) { // reuse a deleted id
+			node = this.free;
+			this.free = this.right[node];
+		} else {
+			if (this.next == this.keys.length)
+				grow();
+			node = this.next++;
+		}
+		this.keys[node] = k;
+		this.values[node] = i;
+		this.left[node] = EXT;
+		this.right[node] = EXT;
+		this.parent[node] = EXT;
+		this.rank[node] = 0;
+		this.size[node] = 1;
+		return node;
+	}
+
+	/**
+	 * private void releaseNode(int node)
+	 * <p>
+	 * puts an unlinked node's id in the free list
+	 */
+	private void releaseNode(int node) {
+		this.values[node] = null; // let the info be collected
+		this.parent[node] = EXT;
+		this.left[node] = EXT;
+		this.right[node] = this.free;
+		this.free = node;
+	}
+
+	private void grow() {//doubles the capacity of all arrays
+		int capacity = this.keys.length * 2;
+		this.keys = Arrays.copyOf(this.keys, capacity);
+		this.left = Arrays.copyOf(this.left, capacity);
+		this.right = Arrays.copyOf(this.right, capacity);
+		this.parent = Arrays.copyOf(this.parent, capacity);
+		this.rank = Arrays.copyOf(this.rank, capacity);
+		this.size = Arrays.copyOf(this.size, capacity);
+		this.values = Arrays.copyOf(this.values, capacity);
+	}
+
+	/**
+	 * private void rotate(int node)
+	 * <p>
+	 * performs a rotation moving node above its parent, by reassigning parents and children.
+	 * right rotation if node is a left child, left rotation otherwise.
+	 * does not promote or demote nodes
+	 */
+	private void rotate(int node) {
+		int parent = this.parent[node];
+		int grandParent = this.parent[parent];
+		if (this.left[parent] == node) { // right rotation
+			int inner = this.right[node];
+			this.left[parent] = inner;
+			if (inner != EXT)
+				this.parent[inner] = parent;
+			this.right[node] = parent;
+		} else { // left rotation
+			int inner = this.left[node];
+			this.right[parent] = inner;
+			if (inner != EXT)
+				this.parent[inner] = parent;
+			this.left[node] = parent;
+		}
+		this.parent[parent] = node;
+		this.parent[node] = grandParent;
+		if (grandParent == EXT)
+			this.root = node;
+		else if (this.left[grandParent] == parent)
+			this.left[grandParent] = node;
+		else
+			this.right[grandParent] = node;
+		this.size[node] = this.size[parent];
+		this.size[parent] = this.size[this.left[parent]] + this.size[this.right[parent]] + 1;
+	}
+
+	/**
+	 * private int insertRebalance(int node)
+	 * <p>
+	 * performs the different rebalancing operations on the tree,
+	 * following an insertion, until it is a balanced WAVL tree again.
+	 * returns the number of rebalancing operations performed, counted as in WAVLTree
+	 */
+	private int insertRebalance(int node) {
+		int rebalances = 0;
+		int parent = this.parent[node];
+		while (parent != EXT && this.rank[parent] == this.rank[node]) { // node is a 0-child
+			boolean isLeft = this.left[parent] == node;
+			int sibling = isLeft ? this.right[parent] : this.left[parent];
+			if (this.rank[parent] - this.rank[sibling] == 1) { // case 1, promote and go up
+				this.rank[parent]++;
+				rebalances++;
+				node = parent;
+				parent = this.parent[node];
+				continue;
+			}
+			int inner = isLeft ? this.right[node] : this.left[node];
+			if (this.rank[node] - this.rank[inner] == 2) { // case 2, single rotation
+				rotate(node);
+				this.rank[parent]--;
+				return rebalances + 2;
+			}
+			rotate(inner); // case 3, double rotation around node's inner child
+			rotate(inner);
+			this.rank[node]--;
+			this.rank[parent]--;
+			this.rank[inner]++;
+			return rebalances + 5;
+		}
+		return rebalances; // get here if promotions were enough
+	}
+
+	/**
+	 * public int insert(int k, String i)
+	 * <p>
+	 * inserts an item with key k and info i to the WAVL tree.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were necessary.
+	 * returns -1 if an item with key k already exists in the tree.
+	 */
+	public int insert(int k, String i) {
+		if (this.root == EXT) { // tree is empty
+			this.root = newNode(k, i);
+			this.MIN = this.root;
+			this.MAX = this.root;
+			return 0;
+		}
+		int insertPoint = searchNode(k);
+		if (this.keys[insertPoint] == k) // key already in tree
+			return -1;
+		int node = newNode(k, i);
+		this.parent[node] = insertPoint;
+		if (k < this.keys[insertPoint])
+			this.left[insertPoint] = node;
+		else
+			this.right[insertPoint] = node;
+		if (k < this.keys[this.MIN])
+			this.MIN = node;
+		if (k > this.keys[this.MAX])
+			this.MAX = node;
+		for (int x = insertPoint; x != EXT; x = this.parent[x]) // increase all needed subtree sizes
+			this.size[x]++;
+		return insertRebalance(node);
+	}
+
+	/**
+	 * private int deleteRebalance(int node)
+	 * <p>
+	 * rebalances tree, starting with node, the parent of the removed node,
+	 * and returns the number of rebalancing operations performed, counted as in WAVLTree
+	 */
+	private int deleteRebalance(int node) {
+		int rebalances = 0;
+		if (this.rank[node] - this.rank[this.left[node]] == 2 && this.rank[node] - this.rank[this.right[node]] == 2) { // node became a (2,2), demote it like WAVLTree
+			this.rank[node]--;
+			rebalances++;
+			node = this.parent[node];
+		}
+		while (node != EXT) {
+			int leftDiff = this.rank[node] - this.rank[this.left[node]];
+			int rightDiff = this.rank[node] - this.rank[this.right[node]];
+			if (leftDiff != 3 && rightDiff != 3) // no 3-child, tree is valid
+				break;
+			boolean leftShort = leftDiff == 3;
+			int sibling = leftShort ? this.right[node] : this.left[node];
+			if ((leftShort ? rightDiff : leftDiff) == 2) { // case 1, demote and go up
+				this.rank[node]--;
+				rebalances++;
+				node = this.parent[node];
+				continue;
+			}
+			int outer = leftShort ? this.right[sibling] : this.left[sibling];
+			int inner = leftShort ? this.left[sibling] : this.right[sibling];
+			int outerDiff = this.rank[sibling] - this.rank[outer];
+			if (outerDiff == 2 && this.rank[sibling] - this.rank[inner] == 2) { // case 2, double demote and go up
+				this.rank[node]--;
+				this.rank[sibling]--;
+				rebalances += 2;
+				node = this.parent[node];
+				continue;
+			}
+			if (outerDiff == 1) { // case 3, single rotation
+				rotate(sibling);
+				this.rank[sibling]++;
+				this.rank[node]--;
+				rebalances += 3;
+				if (this.left[node] == EXT && this.right[node] == EXT && this.rank[node] == 1) { // a (2,2) leaf
+					this.rank[node]--;
+					rebalances++;
+				}
+				return rebalances;
+			}
+			rotate(inner); // case 4, double rotation around sibling's inner child
+			rotate(inner);
+			this.rank[sibling]--;
+			this.rank[node] -= 2;
+			this.rank[inner] += 2;
+			return rebalances + 7;
+		}
+		return rebalances; // get here if demotions were enough
+	}
+
+	/**
+	 * public int delete(int k)
+	 * <p>
+	 * deletes an item with key k from the binary tree, if it is there.
+	 * returns the number of rebalancing operations, or 0 if no rebalancing operations were needed.
+	 * returns -1 if an item with key k was not found in the tree.
+	 */
+	public int delete(int k) {
+		int node = searchNode(k);
+		if (node == EXT || this.keys[node] != k) // key not in tree
+			return -1;
+		int toRemove = node;
+		if (this.left[node] != EXT && this.right[node] != EXT) { // two children, take successor's place
+			toRemove = minNode(this.right[node]);
+			this.keys[node] = this.keys[toRemove];
+			this.values[node] = this.values[toRemove];
+			if (this.MAX == toRemove)
+				this.MAX = node;
+		} else if (this.parent[node] == EXT && (this.left[node] != EXT || this.right[node] != EXT)) { // root of a 2-node tree
+			toRemove = this.left[node] != EXT ? this.left[node] : this.right[node]; // take the child's place, like WAVLTree switches them
+			this.keys[node] = this.keys[toRemove];
+			this.values[node] = this.values[toRemove];
+			this.MIN = node;
+			this.MAX = node;
+		} else {
+			if (this.MIN == node)
+				this.MIN = successor(node);
+			if (this.MAX == node)
+				this.MAX = predecessor(node);
+		}
+		int child = this.left[toRemove] != EXT ? this.left[toRemove] : this.right[toRemove];
+		int parent = this.parent[toRemove];
+		if (child != EXT)
+			this.parent[child] = parent;
+		if (parent == EXT)
+			this.root = child;
+		else if (this.left[parent] == toRemove)
+			this.left[parent] = child;
+		else
+			this.right[parent] = child;
+		releaseNode(toRemove);
+		for (int x = parent; x != EXT; x = this.parent[x]) // decrease all needed subtree sizes
+			this.size[x]--;
+		if (parent == EXT) // removed the root, which was a leaf
+			return 0;
+		return deleteRebalance(parent);
+	}
+
+	/**
+	 * public String min()
+	 * <p>
+	 * Returns the info of the item with the smallest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public String min() {
+		return this.values[this.MIN];
+	}
+
+	/**
+	 * public String max()
+	 * <p>
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public String max() {
+		return this.values[this.MAX];
+	}
+
+	/**
+	 * public String select(int i)
+	 * <p>
+	 * Returns the value of the i'th smallest key (null if tree is empty)
+	 * precondition: size() >= i > 0
+	 */
+	public String select(int i) {
+		if (i <= 0 || this.size() < i)
+			return null;
+		int x = this.MIN;
+		while (this.size[x] < i) //find the LCA of the minimal key and i'th smallest key
+			x = this.parent[x];
+		while (true) {
+			int r = this.size[this.left[x]] + 1;
+			if (i == r)
+				return this.values[x];
+			if (i < r) {
+				x = this.left[x];
+			} else {
+				x = this.right[x];
+				i -= r;
+			}
+		}
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 * <p>
+	 * Returns a sorted array which contains all keys in the tree,
+	 * or an empty array if the tree is empty.
+	 */
+	public int[] keysToArray() {
+		int[] arr = new int[this.size()];
+		int x = this.MIN;
+		for (int j = 0; j < arr.length; j++, x = successor(x))
+			arr[j] = this.keys[x];
+		return arr;
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 * <p>
+	 * Returns an array which contains all info in the tree,
+	 * sorted by their respective keys,
+	 * or an empty array if the tree is empty.
+	 */
+	public String[] infoToArray() {
+		String[] arr = new String[this.size()];
+		int x = this.MIN;
+		for (int j = 0; j < arr.length; j++, x = successor(x))
+			arr[j] = this.values[x];
+		return arr;
+	}
+
+	private int minNode(int node) {//keep going left, stop before external leaf
+		while (this.left[node] != EXT)
+			node = this.left[node];
+		return node;
+	}
+
+	private int maxNode(int node) {//keep going right, stop before external leaf
+		while (this.right[node] != EXT)
+			node = this.right[node];
+		return node;
+	}
+
+	private int successor(int x) {//works like algorithm shown in class
+		if (this.right[x] != EXT)
+			return minNode(this.right[x]);
+		int y = this.parent[x];
+		while (y != EXT && x == this.right[y]) {
+			x = y;
+			y = this.parent[x];
+		}
+		return y;
+	}
+
+	private int predecessor(int x) {//same as successor, only symmetric
+		if (this.left[x] != EXT)
+			return maxNode(this.left[x]);
+		int y = this.parent[x];
+		while (y != EXT && x == this.left[y]) {
+			x = y;
+			y = this.parent[x];
+		}
+		return y;
+	}
+}
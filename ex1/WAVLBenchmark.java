@@ -0,0 +1,779 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * WAVLBenchmark
+ * <p>
+ * Rough comparisons between the WAVL tree implementations.
+ * Run with: java WAVLBenchmark [n]
+ * <p>
+ * These are plain System.nanoTime() loops with a warm-up round,
+ * good enough to compare layouts, not to publish numbers.
+ */
+
+public class WAVLBenchmark {
+
+	private static final int DEFAULT_N = 1_000_000;
+	private static final int LOOKUPS = 2_000_000;
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_N;
+		int[] keys = randomKeys(n, 1);
+		int[] probes = probes(keys, LOOKUPS, 2);
+		System.out.println("n = " + n);
+		valueArena(keys, probes); // first, as it measures retained memory
+		layouts(keys, probes);
+		allocations(keys);
+		bulkLoad(keys);
+		concurrency(keys);
+		keyTypes(keys, probes);
+		metrics(keys, probes);
+		frozen(keys, probes);
+		nodePool(keys);
+		batchSearch(keys, probes);
+		batchUpdates(keys);
+		slidingWindow(keys);
+		appends(keys);
+		rebalanceCounts(keys.length);
+	}
+
+	/**
+	 * public static void layouts(int[] keys, int[] probes)
+	 * <p>
+	 * compares bytes per entry and lookup latency of the object-graph WAVLTree
+	 * against the struct-of-arrays WAVLArrayTree, and checks their rebalancing counts agree
+	 */
+	public static void layouts(int[] keys, int[] probes) {
+		String value = "v"; // shared value, so only the tree itself is measured
+		long before = usedMemory();
+		WAVLTree tree = new WAVLTree();
+		for (int key : keys)
+			tree.insert(key, value);
+		long treeBytes = usedMemory() - before;
+		before = usedMemory();
+		WAVLArrayTree arrayTree = new WAVLArrayTree(keys.length);
+		for (int key : keys)
+			arrayTree.insert(key, value);
+		long arrayBytes = usedMemory() - before;
+		report("WAVLTree bytes/entry", (double) treeBytes / keys.length);
+		report("WAVLArrayTree bytes/entry", (double) arrayBytes / keys.length);
+		for (int round = 0; round < 2; round++) { // first round is warm-up
+			long start = System.nanoTime();
+			int hits = 0;
+			for (int probe : probes)
+				if (tree.search(probe) != null)
+					hits++;
+			long treeTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int probe : probes)
+				if (arrayTree.search(probe) != null)
+					hits--;
+			long arrayTime = System.nanoTime() - start;
+			if (round == 1) {
+				report("WAVLTree search ns/op", (double) treeTime / probes.length);
+				report("WAVLArrayTree search ns/op", (double) arrayTime / probes.length);
+			}
+			if (hits != 0) // both trees must agree
+				throw new IllegalStateException("search results differ");
+		}
+		WAVLArrayTree counted = new WAVLArrayTree();
+		report("WAVLArrayTree rebalances/op (checked)", sameRebalanceCounts("WAVLArrayTree", keys.length,
+				k -> counted.insert(k, value), counted::delete));
+	}
+
+	/**
+	 * public static void allocations(int[] keys)
+	 * <p>
+	 * reports the bytes allocated by the current thread per insert and per delete.
+	 * inserts should allocate only the new node, deletes and rebalancing nothing at all
+	 */
+	public static void allocations(int[] keys) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		String value = "v";
+		for (int round = 0; round < 2; round++) { // first round is warm-up, so JIT allocations aren't counted
+			WAVLTree tree = new WAVLTree();
+			long start = threads.getThreadAllocatedBytes(thread);
+			for (int key : keys)
+				tree.insert(key, value);
+			long inserted = threads.getThreadAllocatedBytes(thread);
+			for (int key : keys)
+				tree.delete(key);
+			long deleted = threads.getThreadAllocatedBytes(thread);
+			if (round == 1) {
+				report("WAVLTree insert bytes/op", (double) (inserted - start) / keys.length);
+				report("WAVLTree delete bytes/op", (double) (deleted - inserted) / keys.length);
+			}
+		}
+	}
+
+	/**
+	 * public static void nodePool(int[] keys)
+	 * <p>
+	 * replaces every key of a full tree by its odd neighbour and back, a delete and an insert per step,
+	 * with and without a node pool, and reports time, bytes allocated and GC time per step
+	 */
+	public static void nodePool(int[] keys) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		String value = "v";
+		for (int round = 0; round < 2; round++) { // first round is warm-up
+			for (int pooled = 0; pooled < 2; pooled++) {
+				WAVLTree tree = new WAVLTree(keys.clone(), filled(keys.length, value));
+				if (pooled == 1)
+					tree.enableNodePool(1024);
+				long gcBefore = gcMillis();
+				long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+				long start = System.nanoTime();
+				for (int pass = 0; pass < 4; pass++) {
+					for (int key : keys) {
+						int old = (pass & 1) == 0 ? key : key + 1;
+						tree.delete(old);
+						tree.insert(old ^ 1, value); // key + 1 on even passes, back to key on odd ones
+					}
+				}
+				long time = System.nanoTime() - start;
+				long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+				long gc = gcMillis() - gcBefore;
+				long steps = 4L * keys.length;
+				if (round == 1) {
+					String name = pooled == 1 ? "with node pool" : "without node pool";
+					report("churn ns/step, " + name, (double) time / steps);
+					report("churn bytes/step, " + name, (double) allocated / steps);
+					report("churn GC ms, " + name, gc);
+				}
+			}
+		}
+	}
+
+	/**
+	 * public static void valueArena(int[] keys, int[] probes)
+	 * <p>
+	 * compares bytes per entry and search latency of a tree holding a distinct info string per key,
+	 * with the info in Strings and in a value arena.
+	 * both trees are kept live until both are measured, each on top of what was there before it,
+	 * and main() runs this section first, so earlier sections leave no garbage to be collected in between
+	 */
+	public static void valueArena(int[] keys, int[] probes) {
+		WAVLTree[] trees = new WAVLTree[2];
+		long[] bytes = new long[2];
+		long before = usedMemory();
+		for (int packed = 0; packed < 2; packed++) {
+			WAVLTree tree = new WAVLTree();
+			if (packed == 1)
+				tree.enableValueArena();
+			for (int key : keys)
+				tree.insert(key, "item-" + key);
+			trees[packed] = tree;
+			long after = usedMemory();
+			bytes[packed] = after - before;
+			before = after;
+		}
+		report("bytes/entry, without value arena", (double) bytes[0] / keys.length);
+		report("bytes/entry, with value arena", (double) bytes[1] / keys.length);
+		report("arena bytes/entry", (double) trees[1].valueArenaBytes() / keys.length);
+		for (int packed = 0; packed < 2; packed++) {
+			long time = 0;
+			for (int round = 0; round < 2; round++) { // first round is warm-up
+				long start = System.nanoTime();
+				int length = 0;
+				for (int probe : probes) {
+					String value = trees[packed].search(probe);
+					if (value != null)
+						length += value.length();
+				}
+				time = System.nanoTime() - start;
+				if (length == 0)
+					throw new IllegalStateException("no probe was found");
+			}
+			report("search ns/op, " + (packed == 1 ? "with value arena" : "without value arena"), (double) time / probes.length);
+		}
+	}
+
+	/**
+	 * public static void batchSearch(int[] keys, int[] probes)
+	 * <p>
+	 * compares searchAll() on batches of probes against a search() per probe, for a few batch sizes
+	 */
+	public static void batchSearch(int[] keys, int[] probes) {
+		WAVLTree tree = new WAVLTree(keys.clone(), filled(keys.length, "v"));
+		for (int batch = 16; batch <= 65536; batch *= 16) {
+			int[] chunk = new int[batch];
+			long batchTime = 0;
+			long singleTime = 0;
+			for (int round = 0; round < 2; round++) { // first round is warm-up
+				int hits = 0;
+				long start = System.nanoTime();
+				for (int offset = 0; offset + batch <= probes.length; offset += batch) { // separate passes, so neither warms the cache for the other
+					System.arraycopy(probes, offset, chunk, 0, batch);
+					for (String value : tree.searchAll(chunk))
+						if (value != null)
+							hits++;
+				}
+				batchTime = System.nanoTime() - start;
+				start = System.nanoTime();
+				for (int offset = 0; offset + batch <= probes.length; offset += batch) {
+					System.arraycopy(probes, offset, chunk, 0, batch);
+					for (int probe : chunk)
+						if (tree.search(probe) != null)
+							hits--;
+				}
+				singleTime = System.nanoTime() - start;
+				if (hits != 0) // both must agree
+					throw new IllegalStateException("search results differ");
+			}
+			int searched = probes.length / batch * batch;
+			report("searchAll ns/key, batch " + batch, (double) batchTime / searched);
+			report("search ns/key, batch " + batch, (double) singleTime / searched);
+		}
+	}
+
+	/**
+	 * public static void batchUpdates(int[] keys)
+	 * <p>
+	 * compares insertAll() and deleteAll() of a batch of n / 10 of the keys, on a tree of the other keys,
+	 * against sorting the batch and calling insert() (or delete()) for each key,
+	 * and checks that both ways count the same rebalancing operations
+	 */
+	public static void batchUpdates(int[] keys) {
+		int m = Math.max(1, keys.length / 10);
+		int[] batch = Arrays.copyOf(keys, m);
+		int[] base = Arrays.copyOfRange(keys, m, keys.length);
+		String[] values = filled(m, "v");
+		String[] baseValues = filled(base.length, "v");
+		for (int round = 0; round < 2; round++) { // first round is warm-up
+			WAVLTree batched = new WAVLTree(base, baseValues);
+			WAVLTree looped = new WAVLTree(base, baseValues);
+			usedMemory(); // collects now, so both trees are old before the timings
+			long start = System.nanoTime();
+			int batchedInserts = batched.insertAll(batch, values);
+			long insertAllTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			int[] sorted = batch.clone();
+			Arrays.sort(sorted);
+			int loopedInserts = 0;
+			for (int k : sorted)
+				loopedInserts += looped.insert(k, "v");
+			long insertTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			int batchedDeletes = batched.deleteAll(batch);
+			long deleteAllTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			sorted = batch.clone();
+			Arrays.sort(sorted);
+			int loopedDeletes = 0;
+			for (int k : sorted)
+				loopedDeletes += looped.delete(k);
+			long deleteTime = System.nanoTime() - start;
+			if (batchedInserts != loopedInserts || batchedDeletes != loopedDeletes)
+				throw new IllegalStateException("batch rebalancing counts differ");
+			if (batched.size() != base.length || looped.size() != base.length)
+				throw new IllegalStateException("sizes differ");
+			if (round == 1) {
+				report("insertAll() ns/key", (double) insertAllTime / m);
+				report("sort + insert() loop ns/key", (double) insertTime / m);
+				report("deleteAll() ns/key", (double) deleteAllTime / m);
+				report("sort + delete() loop ns/key", (double) deleteTime / m);
+				report("batch rebalances/key, same as loop", (double) (batchedInserts + batchedDeletes) / (2 * m));
+			}
+		}
+	}
+
+	/**
+	 * public static void slidingWindow(int[] keys)
+	 * <p>
+	 * streams keys (mod 1000, so values repeat) through windows of a few sizes, asking for the median and p99
+	 * after every value, with SlidingWindowQuantiles against a sorted array kept up to date by binary search and arraycopy
+	 */
+	public static void slidingWindow(int[] keys) {
+		for (int capacity = 1000; capacity <= 100_000; capacity *= 10) {
+			long treeTime = 0;
+			long arrayTime = 0;
+			for (int round = 0; round < 2; round++) { // first round is warm-up
+				long checksum = 0;
+				long start = System.nanoTime();
+				SlidingWindowQuantiles window = new SlidingWindowQuantiles(capacity);
+				for (int key : keys) {
+					window.push(key % 1000);
+					checksum += window.median() + window.quantile(0.99);
+				}
+				treeTime = System.nanoTime() - start;
+				start = System.nanoTime();
+				int[] sorted = new int[capacity];
+				int count = 0;
+				for (int j = 0; j < keys.length; j++) {
+					if (count == capacity) { // remove the value pushed capacity steps ago
+						int at = Arrays.binarySearch(sorted, 0, count, keys[j - capacity] % 1000);
+						System.arraycopy(sorted, at + 1, sorted, at, --count - at);
+					}
+					int value = keys[j] % 1000;
+					int at = Arrays.binarySearch(sorted, 0, count, value);
+					if (at < 0)
+						at = -at - 1;
+					System.arraycopy(sorted, at, sorted, at + 1, count++ - at);
+					sorted[at] = value;
+					checksum -= sorted[(count + 1) / 2 - 1] + sorted[(int) Math.ceil(0.99 * count) - 1];
+				}
+				arrayTime = System.nanoTime() - start;
+				if (checksum != 0) // both must agree
+					throw new IllegalStateException("quantiles differ");
+			}
+			report("window " + capacity + " ns/push, WAVL", (double) treeTime / keys.length);
+			report("window " + capacity + " ns/push, sorted array", (double) arrayTime / keys.length);
+		}
+	}
+
+	/**
+	 * public static void appends(int[] keys)
+	 * <p>
+	 * compares inserting increasing keys (like timestamps), which take insert()'s append path,
+	 * against inserting the same number of keys in random order, and against TreeMap.put() of increasing keys
+	 */
+	public static void appends(int[] keys) {
+		String value = "v";
+		for (int round = 0; round < 2; round++) { // first round is warm-up
+			long start = System.nanoTime();
+			WAVLTree appended = new WAVLTree();
+			for (int j = 0; j < keys.length; j++)
+				appended.insert(j, value);
+			long appendTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			WAVLTree shuffled = new WAVLTree();
+			for (int key : keys)
+				shuffled.insert(key, value);
+			long randomTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			TreeMap<Integer, String> map = new TreeMap<>();
+			for (int j = 0; j < keys.length; j++)
+				map.put(j, value);
+			long mapTime = System.nanoTime() - start;
+			if (appended.size() != map.size() || shuffled.size() != map.size())
+				throw new IllegalStateException("sizes differ");
+			if (round == 1) {
+				report("WAVLTree append ns/op", (double) appendTime / keys.length);
+				report("WAVLTree random insert ns/op", (double) randomTime / keys.length);
+				report("TreeMap append ns/op", (double) mapTime / keys.length);
+			}
+		}
+	}
+
+	/**
+	 * public static void rebalanceCounts(int n)
+	 * <p>
+	 * checks, like sameRebalanceCounts(), that PersistentWAVLTree and MappedWAVLTree
+	 * count rebalancing operations the same as WAVLTree
+	 * (layouts() and keyTypes() check the other variants)
+	 */
+	public static void rebalanceCounts(int n) {
+		String value = "v";
+		PersistentWAVLTree persistent = new PersistentWAVLTree();
+		sameRebalanceCounts("PersistentWAVLTree", n, k -> persistent.insert(k, value), persistent::delete);
+		try {
+			Path file = Files.createTempFile("wavl", ".nodes");
+			Files.delete(file); // MappedWAVLTree creates it
+			try (MappedWAVLTree mapped = new MappedWAVLTree(file)) {
+				double perOp = sameRebalanceCounts("MappedWAVLTree", n, k -> mapped.insert(k, value), mapped::delete);
+				report("other variants rebalances/op (checked)", perOp);
+			} finally {
+				Files.deleteIfExists(file);
+				Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".values"));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * static double sameRebalanceCounts(String name, int n, IntUnaryOperator insert, IntUnaryOperator delete)
+	 * <p>
+	 * runs the same random inserts and deletes (up to 200000 of them, over n / 2 keys, so deletes hit)
+	 * on a new WAVLTree and, through insert and delete, on an empty tree of the variant called name.
+	 * fails if any insert or delete returns a different number of rebalancing operations than WAVLTree's,
+	 * since each variant keeps its own copy of WAVLTree's rebalancing, and returns the rebalancing operations per op
+	 */
+	static double sameRebalanceCounts(String name, int n, IntUnaryOperator insert, IntUnaryOperator delete) {
+		int ops = Math.min(n, 200_000);
+		int range = Math.max(1, ops / 2);
+		Random random = new Random(4);
+		WAVLTree tree = new WAVLTree();
+		long total = 0;
+		for (int op = 0; op < ops; op++) {
+			int k = random.nextInt(range);
+			int expected;
+			int count;
+			if (random.nextInt(5) < 3) {
+				expected = tree.insert(k, "v");
+				count = insert.applyAsInt(k);
+			} else {
+				expected = tree.delete(k);
+				count = delete.applyAsInt(k);
+			}
+			if (count != expected)
+				throw new IllegalStateException(name + " counted " + count + " rebalances, WAVLTree " + expected);
+			total += Math.max(0, expected);
+		}
+		return (double) total / ops;
+	}
+
+	private static long gcMillis() {//total collection time of all collectors so far
+		long total = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+			total += Math.max(0, collector.getCollectionTime());
+		return total;
+	}
+
+	/**
+	 * public static void bulkLoad(int[] keys)
+	 * <p>
+	 * compares building a tree by repeated insert() against the bulk constructor,
+	 * from sorted and from unsorted arrays
+	 */
+	public static void bulkLoad(int[] keys) {
+		String[] values = new String[keys.length];
+		Arrays.fill(values, "v");
+		int[] sorted = keys.clone();
+		Arrays.sort(sorted);
+		for (int round = 0; round < 2; round++) { // first round is warm-up
+			long start = System.nanoTime();
+			WAVLTree inserted = new WAVLTree();
+			for (int j = 0; j < keys.length; j++)
+				inserted.insert(keys[j], values[j]);
+			long insertTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			WAVLTree fromSorted = new WAVLTree(sorted, values);
+			long sortedTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			WAVLTree fromUnsorted = new WAVLTree(keys, values);
+			long unsortedTime = System.nanoTime() - start;
+			if (inserted.size() != fromSorted.size() || inserted.size() != fromUnsorted.size())
+				throw new IllegalStateException("sizes differ");
+			if (round == 1) {
+				report("insert() loop ms", insertTime / 1e6);
+				report("bulk load, sorted ms", sortedTime / 1e6);
+				report("bulk load, unsorted ms", unsortedTime / 1e6);
+			}
+		}
+	}
+
+	/**
+	 * public static void keyTypes(int[] keys, int[] probes)
+	 * <p>
+	 * compares insert and search times of the int-keyed WAVLTree, the long-keyed LongWAVLTree,
+	 * and a boxed TreeMap of Long keys, on the same keys,
+	 * and checks that LongWAVLTree and GenericWAVLTree count rebalancing operations as WAVLTree does
+	 */
+	public static void keyTypes(int[] keys, int[] probes) {
+		String value = "v";
+		for (int round = 0; round < 2; round++) { // first round is warm-up
+			long start = System.nanoTime();
+			WAVLTree intTree = new WAVLTree();
+			for (int key : keys)
+				intTree.insert(key, value);
+			long intInsert = System.nanoTime() - start;
+			start = System.nanoTime();
+			LongWAVLTree<String> longTree = new LongWAVLTree<>();
+			for (int key : keys)
+				longTree.insert(key, value);
+			long longInsert = System.nanoTime() - start;
+			start = System.nanoTime();
+			TreeMap<Long, String> treeMap = new TreeMap<>();
+			for (int key : keys)
+				treeMap.put((long) key, value);
+			long mapInsert = System.nanoTime() - start;
+			int intHits = 0;
+			int longHits = 0;
+			int mapHits = 0;
+			start = System.nanoTime();
+			for (int probe : probes)
+				if (intTree.search(probe) != null)
+					intHits++;
+			long intSearch = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int probe : probes)
+				if (longTree.search(probe) != null)
+					longHits++;
+			long longSearch = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int probe : probes)
+				if (treeMap.get((long) probe) != null)
+					mapHits++;
+			long mapSearch = System.nanoTime() - start;
+			if (intHits != longHits || intHits != mapHits)
+				throw new IllegalStateException("search results differ");
+			if (round == 1) {
+				report("WAVLTree insert ns/op", (double) intInsert / keys.length);
+				report("LongWAVLTree insert ns/op", (double) longInsert / keys.length);
+				report("TreeMap<Long> insert ns/op", (double) mapInsert / keys.length);
+				report("WAVLTree search ns/op", (double) intSearch / probes.length);
+				report("LongWAVLTree search ns/op", (double) longSearch / probes.length);
+				report("TreeMap<Long> search ns/op", (double) mapSearch / probes.length);
+			}
+		}
+		LongWAVLTree<String> longTree = new LongWAVLTree<>();
+		GenericWAVLTree<Integer, String> genericTree = new GenericWAVLTree<>(Comparator.naturalOrder());
+		report("LongWAVLTree rebalances/op (checked)", sameRebalanceCounts("LongWAVLTree", keys.length,
+				k -> longTree.insert(k, value), longTree::delete));
+		report("GenericWAVLTree rebalances/op (checked)", sameRebalanceCounts("GenericWAVLTree", keys.length,
+				k -> genericTree.insert(k, value), genericTree::delete));
+	}
+
+	/**
+	 * public static void metrics(int[] keys, int[] probes)
+	 * <p>
+	 * compares insert and search times of a WAVLTree with metrics disabled and enabled,
+	 * and prints what the enabled metrics collected
+	 */
+	public static void metrics(int[] keys, int[] probes) {
+		String value = "v";
+		for (int round = 0; round < 2; round++) { // first round is warm-up
+			long[] times = new long[4];
+			WAVLTreeMetrics metrics = null;
+			for (int enabled = 0; enabled < 2; enabled++) {
+				WAVLTree tree = new WAVLTree();
+				if (enabled == 1)
+					metrics = tree.enableMetrics();
+				long start = System.nanoTime();
+				for (int key : keys)
+					tree.insert(key, value);
+				times[enabled * 2] = System.nanoTime() - start;
+				start = System.nanoTime();
+				for (int probe : probes)
+					tree.search(probe);
+				times[enabled * 2 + 1] = System.nanoTime() - start;
+			}
+			if (round == 1) {
+				report("insert ns/op, metrics off", (double) times[0] / keys.length);
+				report("insert ns/op, metrics on", (double) times[2] / keys.length);
+				report("search ns/op, metrics off", (double) times[1] / probes.length);
+				report("search ns/op, metrics on", (double) times[3] / probes.length);
+				report("rotations/insert", (double) metrics.getRotationCount() / keys.length);
+				report("promotions/insert", (double) metrics.getPromotionCount() / keys.length);
+				report("average search depth", metrics.getAverageSearchDepth());
+				report("max search depth", metrics.getMaxSearchDepth());
+				report("root rank", metrics.getRootRank());
+				report("insert p99 ns", metrics.getInsertLatencyP99());
+				report("search p99 ns", metrics.getSearchLatencyP99());
+			}
+		}
+	}
+
+	/**
+	 * public static void frozen(int[] keys, int[] probes)
+	 * <p>
+	 * compares lookup latency of a WAVLTree against the FrozenWAVLTree freeze() makes of it.
+	 * run with a bigger n (and heap) to see how the gap grows once the tree is far bigger than the caches
+	 */
+	public static void frozen(int[] keys, int[] probes) {
+		WAVLTree tree = new WAVLTree(keys, filled(keys.length, "v"));
+		long start = System.nanoTime();
+		FrozenWAVLTree frozen = tree.freeze();
+		report("freeze() ms", (System.nanoTime() - start) / 1e6);
+		for (int round = 0; round < 2; round++) { // first round is warm-up
+			int hits = 0;
+			start = System.nanoTime();
+			for (int probe : probes)
+				if (tree.search(probe) != null)
+					hits++;
+			long treeTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int probe : probes)
+				if (frozen.search(probe) != null)
+					hits--;
+			long frozenTime = System.nanoTime() - start;
+			if (hits != 0)
+				throw new IllegalStateException("search results differ");
+			if (round == 1) {
+				report("WAVLTree search ns/op", (double) treeTime / probes.length);
+				report("FrozenWAVLTree search ns/op", (double) frozenTime / probes.length);
+			}
+		}
+	}
+
+	/**
+	 * private interface ConcurrentTarget
+	 * <p>
+	 * the operations the concurrency benchmark runs against each map
+	 */
+	private interface ConcurrentTarget {
+		String search(int k);
+
+		void insert(int k, String i);
+
+		void delete(int k);
+	}
+
+	/**
+	 * public static void concurrency(int[] keys)
+	 * <p>
+	 * compares the throughput of a 95% search / 5% insert-delete mix, on 1 to #cores threads,
+	 * of a WAVLTree behind one global lock, ConcurrentWAVLTree, ShardedWAVLMap and ConcurrentSkipListMap
+	 */
+	public static void concurrency(int[] keys) {
+		String value = "v";
+		WAVLTree locked = new WAVLTree(keys.clone(), filled(keys.length, value));
+		ConcurrentWAVLTree concurrent = new ConcurrentWAVLTree();
+		ShardedWAVLMap sharded = new ShardedWAVLMap(4 * Runtime.getRuntime().availableProcessors());
+		ConcurrentSkipListMap<Integer, String> skipList = new ConcurrentSkipListMap<>();
+		for (int key : keys) {
+			concurrent.insert(key, value);
+			sharded.insert(key, value);
+			skipList.put(key, value);
+		}
+		sharded.rebalance(); // benchmark keys are small, so they all start in the middle shards
+		ConcurrentTarget[] targets = {
+				new ConcurrentTarget() {
+					public String search(int k) {
+						synchronized (locked) {
+							return locked.search(k);
+						}
+					}
+
+					public void insert(int k, String i) {
+						synchronized (locked) {
+							locked.insert(k, i);
+						}
+					}
+
+					public void delete(int k) {
+						synchronized (locked) {
+							locked.delete(k);
+						}
+					}
+				},
+				new ConcurrentTarget() {
+					public String search(int k) {
+						return concurrent.search(k);
+					}
+
+					public void insert(int k, String i) {
+						concurrent.insert(k, i);
+					}
+
+					public void delete(int k) {
+						concurrent.delete(k);
+					}
+				},
+				new ConcurrentTarget() {
+					public String search(int k) {
+						return sharded.search(k);
+					}
+
+					public void insert(int k, String i) {
+						sharded.insert(k, i);
+					}
+
+					public void delete(int k) {
+						sharded.delete(k);
+					}
+				},
+				new ConcurrentTarget() {
+					public String search(int k) {
+						return skipList.get(k);
+					}
+
+					public void insert(int k, String i) {
+						skipList.put(k, i);
+					}
+
+					public void delete(int k) {
+						skipList.remove(k);
+					}
+				}
+		};
+		String[] names = {"synchronized WAVLTree", "ConcurrentWAVLTree", "ShardedWAVLMap", "ConcurrentSkipListMap"};
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (int threads = 1; threads <= cores; threads *= 2)
+			for (int t = 0; t < targets.length; t++)
+				report(names[t] + " ops/ms, " + threads + " threads", throughput(targets[t], keys, threads, 500));
+	}
+
+	private static double throughput(ConcurrentTarget target, int[] keys, int threads, long millis) {
+		LongAdder ops = new LongAdder();
+		long end = System.nanoTime() + millis * 1_000_000;
+		Thread[] workers = new Thread[threads];
+		for (int w = 0; w < threads; w++) {
+			workers[w] = new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				long done = 0;
+				while ((done & 1023) != 0 || System.nanoTime() < end) {
+					int key = keys[random.nextInt(keys.length)];
+					int dice = random.nextInt(100);
+					if (dice < 95)
+						target.search(key);
+					else if (dice < 98) // odd keys come and go, even keys stay
+						target.insert(key + 1, "w");
+					else
+						target.delete(key + 1);
+					done++;
+				}
+				ops.add(done);
+			});
+			workers[w].start();
+		}
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return (double) ops.sum() / millis;
+	}
+
+	static String[] filled(int n, String value) {
+		String[] values = new String[n];
+		Arrays.fill(values, value);
+		return values;
+	}
+
+	static int[] randomKeys(int n, long seed) {//n distinct keys in random order
+		Random random = new Random(seed);
+		int[] keys = new int[n];
+		for (int i = 0; i < n; i++)
+			keys[i] = i * 2; // even keys, so odd probes miss
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int temp = keys[i];
+			keys[i] = keys[j];
+			keys[j] = temp;
+		}
+		return keys;
+	}
+
+	static int[] probes(int[] keys, int count, long seed) {//mostly hits, some misses
+		Random random = new Random(seed);
+		int[] probes = new int[count];
+		for (int i = 0; i < count; i++)
+			probes[i] = keys[random.nextInt(keys.length)] + (random.nextInt(8) == 0 ? 1 : 0);
+		return probes;
+	}
+
+	static long usedMemory() {//collects until the heap stops shrinking, at most 10 times
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			long now = runtime.totalMemory() - runtime.freeMemory();
+			if (now >= used)
+				return now;
+			used = now;
+		}
+		return used;
+	}
+
+	static void report(String name, double value) {
+		System.out.printf("%-40s %12.2f%n", name, value);
+	}
+}
@@ -1,3 +1,12 @@
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
 /**
  * Nadav Gasner
  * username: nadavgasner, id:204057566
@@ -16,21 +25,104 @@
 public class WAVLTree {
 
 	private IWAVLNode root;
-	private IWAVLNode EXT = new WAVLNode();
+	private static final IWAVLNode EXT = new WAVLNode(); // external leaf, shared by all trees so subtrees can move between them
+	private static final int STALE = -1; // subtree size of a node insertAll() or deleteAll() will recompute
+	private static final int NOT_BATCHING = Integer.MAX_VALUE;
+	private static final int RADIX_SORT_MIN = 1024;
 	private IWAVLNode MIN;
 	private IWAVLNode MAX;
+	private IWAVLNode FINGER; // last node reached by searchNear()
+	private Augmentation augmentation; // null unless setAugmentation() was called
+	private WAVLTreeMetrics metrics; // null unless enableMetrics() was called
+	private WAVLNode pool; // deleted nodes kept for reuse, linked through their right child
+	private int poolSize;
+	private int poolCapacity; // 0 unless enableNodePool() was called
+	private ValueArena arena; // null unless enableValueArena() was called
+	private int staleFrom = NOT_BATCHING; // insertAll() and deleteAll() leave subtrees this big stale
 
 	public WAVLTree() {
 		this.root = EXT;
 		this.MIN = EXT;
 		this.MAX = EXT;
+		this.FINGER = EXT;
 	}
 
 	public WAVLTree(IWAVLNode root) {
 		this.root = root;
 		this.root.setParent(EXT);
-		this.MIN = root;
-		this.MAX = root;
+		this.MIN = root == EXT ? EXT : minNode(root); // root may come with children, and insert() relies on MIN and MAX
+		this.MAX = root == EXT ? EXT : maxNode(root);
+		this.FINGER = root;
+	}
+
+	/**
+	 * public WAVLTree(int[] keys, String[] values)
+	 * <p>
+	 * builds a tree holding keys[j] with info values[j] for every j, in O(n).
+	 * unsorted keys are sorted first, by a radix sort, also in O(n).
+	 * if a key appears more than once, its first occurrence is kept, like repeated insert() would.
+	 * <p>
+	 * precondition: keys.length == values.length
+	 */
+	public WAVLTree(int[] keys, String[] values) {
+		if (!isStrictlySorted(keys)) { // sort both arrays together, and drop duplicates
+			long[] packed = sortedOrder(keys);
+			int[] sortedKeys = new int[keys.length];
+			String[] sortedValues = new String[keys.length];
+			int n = 0;
+			for (int j = 0; j < packed.length; j++) {
+				int key = (int) (packed[j] >> 32);
+				if (n > 0 && sortedKeys[n - 1] == key) // duplicate, first one was already taken
+					continue;
+				sortedKeys[n] = key;
+				sortedValues[n] = values[(int) packed[j]];
+				n++;
+			}
+			keys = Arrays.copyOf(sortedKeys, n);
+			values = Arrays.copyOf(sortedValues, n);
+		}
+		this.root = buildSubtree(keys, values, 0, keys.length);
+		this.MIN = EXT;
+		this.MAX = EXT;
+		this.FINGER = EXT;
+		if (this.root != EXT) {
+			this.root.setParent(EXT);
+			this.MIN = minNode(this.root);
+			this.MAX = maxNode(this.root);
+		}
+	}
+
+	private static boolean isStrictlySorted(int[] keys) {//checks keys are ascending with no duplicates
+		for (int j = 1; j < keys.length; j++)
+			if (keys[j - 1] >= keys[j])
+				return false;
+		return true;
+	}
+
+	/**
+	 * private IWAVLNode buildSubtree(int[] keys, String[] values, int from, int to)
+	 * <p>
+	 * returns the root of a perfectly balanced subtree holding keys[from..to-1],
+	 * with ranks set to heights, which makes it a valid WAVL tree (rank differentials are 1 or 2)
+	 * <p>
+	 * precondition: keys[from..to-1] is strictly sorted
+	 */
+	private IWAVLNode buildSubtree(int[] keys, String[] values, int from, int to) {
+		if (from >= to)
+			return EXT;
+		int mid = (from + to) >>> 1;
+		IWAVLNode node = createNode(keys[mid], values[mid]);
+		IWAVLNode left = buildSubtree(keys, values, from, mid);
+		IWAVLNode right = buildSubtree(keys, values, mid + 1, to);
+		node.setLeft(left);
+		node.setRight(right);
+		if (left != EXT)
+			left.setParent(node);
+		if (right != EXT)
+			right.setParent(node);
+		node.setRank(Math.max(left.getRank(), right.getRank()) + 1); // halves differ in size by at most 1
+		node.setSize(to - from);
+		return node;
 	}
 
 	/**
@@ -43,24 +135,91 @@ public class WAVLTree {
 	}
 
 	/**
-	 * private IWAVLNode recSearch(IWAVLNode node, int k)
+	 * public IWAVLNode recSearch(IWAVLNode node, int k)
 	 * <p>
-	 * recursively returns the IWAVLNode with key k if it exists in the tree
-	 * otherwise, returns the last real node encountered
+	 * returns the IWAVLNode with key k if it exists in node's subtree
+	 * otherwise, returns the last real node encountered.
+	 * despite the name, walks down iteratively, so deep trees cost no stack frames
 	 */
 	public IWAVLNode recSearch(IWAVLNode node, int k) {
 		if (node == EXT) // should only get here if tree is empty
 			return null;
-		if (node.getKey() == k) // if this is the key we want, return node
-			return node;
-		if (node.getKey() < k) { // if key we are at is smaller, go left
-			if (node.getRight() == EXT) // check we aren't reaching external leaf
+		while (true) {
+			int key = node.getKey();
+			if (key == k) // if this is the key we want, return node
+				return node;
+			IWAVLNode next = key < k ? node.getRight() : node.getLeft(); // smaller key goes right, bigger goes left
+			if (next == EXT) // check we aren't reaching external leaf
 				return node;
-			return recSearch(node.getRight(), k);
+			node = next;
 		}
-		if (node.getLeft() == EXT) // only here if node.getKey() > k, then symmetric to above
-			return node;
-		return recSearch(node.getLeft(), k);
+	}
+
+	/**
+	 * public IWAVLNode fingerSearch(IWAVLNode finger, int k)
+	 * <p>
+	 * same as recSearch(getRoot(), k), but starts at finger instead of the root:
+	 * climbs only until reaching k or the lowest ancestor of finger whose key range must hold k, and walks down from there.
+	 * a key past MIN or MAX returns it right away, like insertPoint().
+	 * costs O(h) where h is the height of the lowest common ancestor of finger and k's position,
+	 * which is O(log n) in the worst case (close keys may still meet only at the root),
+	 * but cheap when finger and k share a low ancestor, as consecutive keys of a sorted run mostly do.
+	 * if finger is null or was deleted, starts at the root
+	 * <p>
+	 * precondition: finger is null or a node of this tree
+	 */
+	public IWAVLNode fingerSearch(IWAVLNode finger, int k) {
+		if (finger == null || finger == EXT || !finger.isRealNode()) // no usable finger
+			return recSearch(this.root, k);
+		if (k > MAX.getKey()) // append
+			return MAX;
+		if (k < MIN.getKey()) // prepend
+			return MIN;
+		IWAVLNode start = finger; // lowest node the climb saw whose key range holds k
+		IWAVLNode node = finger;
+		if (k > finger.getKey()) { // climbing from a left child, parent's key bounds node's subtree from above
+			while (node.getParent() != EXT) {
+				IWAVLNode parent = node.getParent();
+				if (node == parent.getLeft()) {
+					if (k < parent.getKey()) // start's range ends at parent, and holds k
+						break;
+					start = parent;
+					if (k == parent.getKey())
+						break;
+				}
+				node = parent;
+			}
+		} else if (k < finger.getKey()) { // symmetric, climbing from a right child
+			while (node.getParent() != EXT) {
+				IWAVLNode parent = node.getParent();
+				if (node == parent.getRight()) {
+					if (k > parent.getKey())
+						break;
+					start = parent;
+					if (k == parent.getKey())
+						break;
+				}
+				node = parent;
+			}
+		}
+		return recSearch(start, k);
+	}
+
+	/**
+	 * public String searchNear(int k)
+	 * <p>
+	 * same as search(k), but starts from the node where the previous searchNear(k) ended,
+	 * so a series of lookups of close keys usually climbs and walks down only a few levels.
+	 * still O(log n) in the worst case, see fingerSearch()
+	 */
+	public String searchNear(int k) {
+		IWAVLNode loc = fingerSearch(FINGER, k);
+		if (loc == null) // tree is empty
+			return null;
+		FINGER = loc; // remember where we ended for the next call
+		if (loc.getKey() != k) // meaning k wasn't found
+			return null;
+		return loc.getValue();
 	}
 
 	/**
@@ -70,12 +229,102 @@ public class WAVLTree {
 	 * otherwise, returns null
 	 */
 	public String search(int k) {
-		IWAVLNode loc = recSearch(root, k); // recursive search starting at root
+		WAVLTreeMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		IWAVLNode loc = recSearch(root, k); // search starting at root
+		if (metrics != null)
+			metrics.recordSearch(k, depth(loc), start);
 		if (loc == null || loc.getKey() != k) // meaning k wasn't found
 			return null;
 		return loc.getValue();
 	}
 
+	/**
+	 * public String[] searchAll(int[] keys)
+	 * <p>
+	 * returns an array holding search(keys[j]) at index j.
+	 * the batch is sorted first and walks down the tree once: each node splits its run of sorted keys
+	 * into the keys below it and above it, which go on to its children, so a node shared by many paths is visited once.
+	 * runs waiting to go down are taken in turn (breadth first), so consecutive steps read unrelated nodes
+	 * and their cache misses overlap instead of waiting on each other.
+	 * takes O(m log(n/m + 1) + m) for m keys, instead of O(m log n).
+	 * with metrics enabled, each key is recorded as a search(), with an equal share of the batch's latency
+	 */
+	public String[] searchAll(int[] keys) {
+		WAVLTreeMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		String[] values = new String[keys.length];
+		int[] depths = metrics == null ? null : new int[keys.length]; // where each key's search ended, for the metrics
+		if (keys.length == 0 || this.root == EXT) {
+			if (metrics != null)
+				metrics.recordSearches(keys, depths, start);
+			return values;
+		}
+		long[] order = sortedOrder(keys);
+		int capacity = keys.length + 1; // runs waiting are disjoint and nonempty, so at most keys.length of them
+		IWAVLNode[] nodes = new IWAVLNode[capacity];
+		int[] from = new int[capacity];
+		int[] to = new int[capacity];
+		int[] levels = depths == null ? null : new int[capacity]; // depth of each waiting node
+		int head = 0;
+		int tail = 1;
+		nodes[0] = this.root;
+		to[0] = order.length;
+		while (head != tail) {
+			IWAVLNode node = nodes[head];
+			int lo = from[head];
+			int hi = to[head];
+			int level = levels == null ? 0 : levels[head];
+			nodes[head] = null;
+			head = head + 1 == capacity ? 0 : head + 1;
+			int key = node.getKey();
+			int below = firstAtLeast(order, lo, hi, key);
+			int above = below;
+			if (below < hi && (int) (order[below] >> 32) == key) // skip the copies of key
+				above = key == Integer.MAX_VALUE ? hi : firstAtLeast(order, below, hi, key + 1);
+			if (below < above) { // key was asked for, maybe more than once
+				String value = node.getValue();
+				for (int j = below; j < above; j++)
+					values[(int) order[j]] = value;
+			}
+			if (depths != null) { // the searches ending here: k, and the keys with no child to go on to
+				int end = node.getRight() == EXT ? hi : above;
+				for (int j = node.getLeft() == EXT ? lo : below; j < end; j++)
+					depths[(int) order[j]] = level;
+			}
+			if (lo < below && node.getLeft() != EXT) {
+				nodes[tail] = node.getLeft();
+				from[tail] = lo;
+				to[tail] = below;
+				if (levels != null)
+					levels[tail] = level + 1;
+				tail = tail + 1 == capacity ? 0 : tail + 1;
+			}
+			if (above < hi && node.getRight() != EXT) {
+				nodes[tail] = node.getRight();
+				from[tail] = above;
+				to[tail] = hi;
+				if (levels != null)
+					levels[tail] = level + 1;
+				tail = tail + 1 == capacity ? 0 : tail + 1;
+			}
+		}
+		if (metrics != null)
+			metrics.recordSearches(keys, depths, start);
+		return values;
+	}
+
+	private static int firstAtLeast(long[] order, int lo, int hi, int k) {//first j in [lo, hi) whose key is at least k, or hi
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if ((int) (order[mid] >> 32) < k)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
 	/**
 	 * private void rightRotate(IWAVLNode node)
 	 * <p>
@@ -96,8 +345,16 @@ public class WAVLTree {
 		node.setRight(parent);
 		parent.setParent(node);
 		parent.setLeft(right);
-		node.setSize(parent.getSubtreeSize());
-		parent.setSize(parent.getLeft().getSubtreeSize() + parent.getRight().getSubtreeSize() + 1);
+		if (parent.getSubtreeSize() == STALE) { // in a batch, both are recomputed at its end
+			node.setSize(STALE);
+		} else {
+			node.setSize(parent.getSubtreeSize());
+			parent.setSize(parent.getLeft().getSubtreeSize() + parent.getRight().getSubtreeSize() + 1);
+			pull(parent); // parent is below node now, so its aggregate goes first
+			pull(node);
+		}
+		if (this.metrics != null)
+			this.metrics.rotations.increment();
 	}
 
 
@@ -120,8 +377,16 @@ public class WAVLTree {
 		node.setLeft(parent);
 		parent.setParent(node);
 		parent.setRight(left);
-		node.setSize(parent.getSubtreeSize());
-		parent.setSize(parent.getLeft().getSubtreeSize() + parent.getRight().getSubtreeSize() + 1);
+		if (parent.getSubtreeSize() == STALE) { // in a batch, both are recomputed at its end
+			node.setSize(STALE);
+		} else {
+			node.setSize(parent.getSubtreeSize());
+			parent.setSize(parent.getLeft().getSubtreeSize() + parent.getRight().getSubtreeSize() + 1);
+			pull(parent); // parent is below node now, so its aggregate goes first
+			pull(node);
+		}
+		if (this.metrics != null)
+			this.metrics.rotations.increment();
 	}
 
 	/**
@@ -129,6 +394,7 @@ public class WAVLTree {
 	 * <p>
 	 * performs the different rebalancing operations on the tree,
 	 * following an insertion, until it is a balanced WAVL tree again.
+	 * rank differentials are computed inline, so rebalancing allocates nothing.
 	 * returns the number of rebalancing operations performed
 	 */
 	private int insertRebalance(IWAVLNode toRebalance) {
@@ -137,23 +403,27 @@ public class WAVLTree {
 		if (parent.getLeft() != EXT && parent.getRight() != EXT)
 			return rebalances; // case B, no rebalancing needed
 		while (parent != EXT && parent.getRank() == toRebalance.getRank()) {
-			int[] type = parent.getType();
-			if ((type[0] == 0 && type[1] == 1) || (type[0] == 1 && type[1] == 0)) { // case 1
+			int leftDiff = parent.getRank() - parent.getLeft().getRank();
+			int rightDiff = parent.getRank() - parent.getRight().getRank();
+			if ((leftDiff == 0 && rightDiff == 1) || (leftDiff == 1 && rightDiff == 0)) { // case 1
 				parent.promote();
 				rebalances++;
+				if (this.metrics != null)
+					this.metrics.promotions.increment();
 				toRebalance = parent;
 				parent = toRebalance.getParent();
 				continue;
 			}
-			if (type[0] == 0 && type[1] == 2) {
-				int[] type1 = parent.getLeft().getType();
-				if (type1[0] == 1) { // case 2
+			if (leftDiff == 0 && rightDiff == 2) {
+				IWAVLNode left = parent.getLeft();
+				int outerDiff = left.getRank() - left.getLeft().getRank();
+				if (outerDiff == 1) { // case 2
 					rightRotate(toRebalance);
 					parent.demote();
 					rebalances += 2;
 					return rebalances;
 				}
-				if (type1[0] == 2) { // case 3
+				if (outerDiff == 2) { // case 3
 					IWAVLNode newParent = toRebalance.getRight();
 					leftRotate(newParent); // double rotate around node's right child
 					rightRotate(newParent);
@@ -164,17 +434,18 @@ public class WAVLTree {
 					return rebalances;
 				}
 			}
-			if (type[0] == 2 && type[1] == 0) {
-				int[] type1 = parent.getRight().getType();
-				if (type1[1] == 1) { // symmetric case 2
+			if (leftDiff == 2 && rightDiff == 0) {
+				IWAVLNode right = parent.getRight();
+				int outerDiff = right.getRank() - right.getRight().getRank();
+				if (outerDiff == 1) { // symmetric case 2
 					leftRotate(toRebalance);
 					parent.demote();
 					rebalances += 2;
 					return rebalances;
 				}
-				if (type1[1] == 2) { // symmetric case 3
+				if (outerDiff == 2) { // symmetric case 3
 					IWAVLNode newParent = toRebalance.getLeft();
-					rightRotate(newParent); // double rotate around node's right child
+					rightRotate(newParent); // double rotate around node's left child
 					leftRotate(newParent);
 					toRebalance.demote();
 					parent.demote();
@@ -196,28 +467,67 @@ public class WAVLTree {
 	 * returns -1 if an item with key k already exists in the tree.
 	 */
 	public int insert(int k, String i) {
-		IWAVLNode toInsert = new WAVLNode(k, i); // create new node
-		IWAVLNode insertPoint = recSearch(this.root, k); // search for what will be node's parent
+		WAVLTreeMetrics metrics = this.metrics;
+		if (metrics == null)
+			return insertAt(insertPoint(k), k, i);
+		long start = System.nanoTime();
+		int rebalances = insertAt(insertPoint(k), k, i);
+		metrics.recordInsert(k, rebalances, start);
+		return rebalances;
+	}
+
+	/**
+	 * private IWAVLNode insertPoint(int k)
+	 * <p>
+	 * returns what will be the parent of a new node with key k, or the node holding k (null if tree is empty).
+	 * a key above MAX hangs right under MAX, which has no right child, and a key below MIN left under MIN,
+	 * so appending increasing keys (or prepending decreasing ones) skips the search from the root.
+	 * rebalancing then only climbs the right (or left) spine
+	 */
+	private IWAVLNode insertPoint(int k) {
+		if (this.root != EXT) {
+			if (k > MAX.getKey()) // append
+				return MAX;
+			if (k < MIN.getKey()) // prepend
+				return MIN;
+		}
+		return recSearch(this.root, k); // search for what will be node's parent
+	}
+
+	/**
+	 * private int insertAt(IWAVLNode insertPoint, int k, String i)
+	 * <p>
+	 * same as insert(k, i), once the search found insertPoint,
+	 * the node that holds k or will be the new node's parent (null if tree is empty)
+	 */
+	private int insertAt(IWAVLNode insertPoint, int k, String i) {
+		if (insertPoint != null && insertPoint.getKey() == k) // key already in tree
+			return -1;
+		IWAVLNode toInsert = newNode(k, i); // create new node, or reuse a deleted one
 		if (MIN == EXT || k < MIN.getKey())
 			MIN = toInsert;
 		if (MAX == EXT || k > MAX.getKey())
 			MAX = toInsert;
 		toInsert.setLeft(EXT);
 		toInsert.setRight(EXT);
+		pull(toInsert);
 		if (insertPoint == null) { // means tree is empty
 			this.root = toInsert;
 			this.root.setParent(EXT);
 			return 0; // no rebalancing needed
 		}
-		if (insertPoint.getKey() == k) // key already in tree
-			return -1;
 		toInsert.setParent(insertPoint);
 		if (insertPoint.getKey() > k) // decide if left or right child
 			insertPoint.setLeft(toInsert);
 		else
 			insertPoint.setRight(toInsert);
-		while (insertPoint != EXT) { // increase all needed subtree sizes
+		while (insertPoint != EXT && insertPoint.getSubtreeSize() != STALE) { // increase all needed subtree sizes
+			if (insertPoint.getSubtreeSize() >= this.staleFrom) { // in insertAll(), leave the big ones to its end
+				markStale(insertPoint);
+				break;
+			}
 			insertPoint.setSize(insertPoint.getSubtreeSize() + 1);
+			pull(insertPoint);
 			insertPoint = insertPoint.getParent();
 		}
 		int rebalances = insertRebalance(toInsert); // rebalance
@@ -226,6 +536,86 @@ public class WAVLTree {
 		return rebalances;
 	}
 
+	/**
+	 * public int insertAll(int[] keys, String[] values)
+	 * <p>
+	 * inserts the items keys[j] with info values[j], like calling insert() for each j in order
+	 * (a key already in the tree, or repeated in keys, keeps its first info).
+	 * the batch is sorted first, and each key is searched for with fingerSearch() from where
+	 * the key before it was inserted, so neighbouring keys share the search path instead of each walking down from the root.
+	 * subtree sizes and aggregates aren't walked up to the root per key: a subtree big enough to be shared by several keys
+	 * of the batch is marked stale instead (climbing only up to the first ancestor already marked),
+	 * and recomputed once at the end, so those ancestors are visited once instead of once per key.
+	 * rebalancing is the same as insert()'s, key by key, so is its total.
+	 * with metrics enabled, each key is recorded as an insert(), with its own latency.
+	 * returns the total number of rebalancing operations of all insertions
+	 * <p>
+	 * precondition: keys.length == values.length
+	 */
+	public int insertAll(int[] keys, String[] values) {
+		WAVLTreeMetrics metrics = this.metrics;
+		long[] order = sortedOrder(keys);
+		int rebalances = 0;
+		IWAVLNode finger = EXT;
+		this.staleFrom = staleFrom(this.size(), order.length);
+		try {
+			for (long packed : order) {
+				int k = (int) (packed >> 32);
+				long start = metrics == null ? 0 : System.nanoTime();
+				IWAVLNode insertPoint = fingerSearch(finger, k);
+				int inserted = -1;
+				if (insertPoint != null && insertPoint.getKey() == k) { // already in tree, maybe from this batch
+					finger = insertPoint;
+				} else {
+					inserted = insertAt(insertPoint, k, values[(int) packed]);
+					rebalances += inserted;
+					finger = insertPoint == null ? this.root : insertPoint; // k's neighbour, a good start for the next key
+				}
+				if (metrics != null)
+					metrics.recordInsert(k, inserted, start);
+			}
+		} finally {
+			this.staleFrom = NOT_BATCHING;
+			refresh(this.root);
+		}
+		return rebalances;
+	}
+
+	/**
+	 * private static long[] sortedOrder(int[] keys)
+	 * <p>
+	 * returns keys[j] and j packed in longs (key in the high half), sorted by key, then by j.
+	 * sorts by a radix sort on the key's four bytes, least significant first, so it costs O(keys.length):
+	 * each pass is stable, so equal keys stay in order of j, and a pass on a byte all keys share is skipped
+	 */
+	private static long[] sortedOrder(int[] keys) {
+		long[] packed = new long[keys.length];
+		for (int j = 0; j < keys.length; j++)
+			packed[j] = ((long) keys[j] << 32) | j; // by key, then by original position
+		if (packed.length < RADIX_SORT_MIN) { // too few for four passes over a table of 256 counts
+			Arrays.sort(packed);
+			return packed;
+		}
+		long[] buffer = new long[packed.length];
+		int[] starts = new int[257];
+		for (int shift = 32; shift < 64; shift += 8) {
+			int flip = shift == 56 ? 0x80 : 0; // the top byte holds the sign, so negative keys go first
+			Arrays.fill(starts, 0);
+			for (long p : packed)
+				starts[(((int) (p >>> shift) & 0xff) ^ flip) + 1]++;
+			if (starts[(((int) (packed[0] >>> shift) & 0xff) ^ flip) + 1] == packed.length) // all keys share this byte
+				continue;
+			for (int b = 0; b < 256; b++) // starts[b] is where the first key with byte b goes
+				starts[b + 1] += starts[b];
+			for (long p : packed)
+				buffer[starts[((int) (p >>> shift) & 0xff) ^ flip]++] = p;
+			long[] temp = packed;
+			packed = buffer;
+			buffer = temp;
+		}
+		return packed;
+	}
+
 	private void switchRight(IWAVLNode node1, IWAVLNode node2) {//switch node when node1 is node2's right son
 		IWAVLNode temp = node2.getParent();
 		if (temp != EXT && temp.getLeft() == node2)
@@ -253,6 +643,7 @@ public class WAVLTree {
 		tempInt = node1.getSubtreeSize();
 		node1.setSize(node2.getSubtreeSize());
 		node2.setSize(tempInt);
+		swapAggregates(node1, node2);
 		if (node2 == this.root)
 			this.root = node1;
 	}
@@ -284,6 +675,7 @@ public class WAVLTree {
 		tempInt = node1.getSubtreeSize();
 		node1.setSize(node2.getSubtreeSize());
 		node2.setSize(tempInt);
+		swapAggregates(node1, node2);
 		if (node2 == this.root)
 			this.root = node1;
 	}
@@ -348,6 +740,7 @@ public class WAVLTree {
 		tempInt = node1.getSubtreeSize();
 		node1.setSize(node2.getSubtreeSize());
 		node2.setSize(tempInt);
+		swapAggregates(node1, node2);
 		if (node1 == this.root)
 			this.root = node2;
 		else {
@@ -360,56 +753,60 @@ public class WAVLTree {
 	 * private int deleteRebalance(IWAVLNode toRebalance)
 	 * <p>
 	 * rebalances tree, starting with node toRebalance,
-	 * and returns the number of rebalancing operations performed
+	 * and returns the number of rebalancing operations performed.
+	 * rank differentials are computed inline, so rebalancing allocates nothing.
 	 */
 	private int deleteRebalance(IWAVLNode toRebalance) {
 		int rebalances = 0;
-		int[] type = toRebalance.getType();
-		if (type[0] == 2 && type[1] == 2) {//node is a leaf, since we deleted his child, he became a (2,2)
+		int leftDiff = toRebalance.getRank() - toRebalance.getLeft().getRank();
+		int rightDiff = toRebalance.getRank() - toRebalance.getRight().getRank();
+		if (leftDiff == 2 && rightDiff == 2) {//node is a leaf, since we deleted his child, he became a (2,2)
 			toRebalance.demote();
 			rebalances++;
+			if (this.metrics != null)
+				this.metrics.demotions.increment();
 			toRebalance = toRebalance.getParent();
-			if (toRebalance != EXT) {
-				type = toRebalance.getType();
-			}
 		}
-		while (toRebalance != EXT && (type[0] == 3 || type[1] == 3)) {//stops when we are at the root or if the current node does not have 3 as rank differential with his sons
-			type = toRebalance.getType();
-			if ((type[0] == 3 && type[1] == 2) || (type[0] == 2 && type[1] == 3)) {//case 1
+		while (toRebalance != EXT) {//stops when we are at the root or if the current node does not have 3 as rank differential with his sons
+			leftDiff = toRebalance.getRank() - toRebalance.getLeft().getRank();
+			rightDiff = toRebalance.getRank() - toRebalance.getRight().getRank();
+			if (leftDiff != 3 && rightDiff != 3)
+				break;
+			if ((leftDiff == 3 && rightDiff == 2) || (leftDiff == 2 && rightDiff == 3)) {//case 1
 				toRebalance.demote();
 				rebalances++;
+				if (this.metrics != null)
+					this.metrics.demotions.increment();
 				toRebalance = toRebalance.getParent();
-				if (toRebalance != EXT) {
-					type = toRebalance.getType();
-				}
 				continue;
 			}
-			if ((type[0] == 3 && type[1] == 1)) {
+			if (leftDiff == 3 && rightDiff == 1) {
 				IWAVLNode right = toRebalance.getRight();
-				int[] rightType = right.getType();//checks the right node type
-				if (rightType[0] == 2 && rightType[1] == 2) {//case 2
+				int rightLeftDiff = right.getRank() - right.getLeft().getRank();//checks the right node type
+				int rightRightDiff = right.getRank() - right.getRight().getRank();
+				if (rightLeftDiff == 2 && rightRightDiff == 2) {//case 2
 					toRebalance.demote();
 					right.demote();
 					rebalances += 2;
+					if (this.metrics != null)
+						this.metrics.demotions.add(2);
 					toRebalance = toRebalance.getParent();
-					if (toRebalance != EXT) {
-						type = toRebalance.getType();
-					}
 					continue;
 				}
-				if (rightType[1] == 1) {//case 3
+				if (rightRightDiff == 1) {//case 3
 					leftRotate(right);
 					right.promote();
 					toRebalance.demote();
 					rebalances += 3;
-					type = toRebalance.getType();
-					if (type[0] == 2 && type[1] == 2 && toRebalance.getLeft() == EXT && toRebalance.getRight() == EXT) {
-						toRebalance.demote();
+					if (toRebalance.getLeft() == EXT && toRebalance.getRight() == EXT && toRebalance.getRank() == 1) {
+						toRebalance.demote(); // a (2,2) leaf
 						rebalances++;
+						if (this.metrics != null)
+							this.metrics.demotions.increment();
 					}
 					return rebalances;
 				}
-				if (rightType[1] == 2) {//case 4
+				if (rightRightDiff == 2) {//case 4
 					IWAVLNode toRotate = right.getLeft();
 					rightRotate(toRotate);
 					leftRotate(toRotate);
@@ -420,32 +817,33 @@ public class WAVLTree {
 					return rebalances;
 				}
 			}
-			if ((type[0] == 1 && type[1] == 3)) {//Symmetric cases 2-4
+			if (leftDiff == 1 && rightDiff == 3) {//Symmetric cases 2-4
 				IWAVLNode left = toRebalance.getLeft();
-				int[] leftType = left.getType();
-				if (leftType[0] == 2 && leftType[1] == 2) {//Sym case 2
+				int leftLeftDiff = left.getRank() - left.getLeft().getRank();
+				int leftRightDiff = left.getRank() - left.getRight().getRank();
+				if (leftLeftDiff == 2 && leftRightDiff == 2) {//Sym case 2
 					toRebalance.demote();
 					left.demote();
 					rebalances += 2;
+					if (this.metrics != null)
+						this.metrics.demotions.add(2);
 					toRebalance = toRebalance.getParent();
-					if (toRebalance != EXT) {
-						type = toRebalance.getType();
-					}
 					continue;
 				}
-				if (leftType[0] == 1) {//Sym case 3
+				if (leftLeftDiff == 1) {//Sym case 3
 					rightRotate(left);
 					left.promote();
 					toRebalance.demote();
 					rebalances += 3;
-					type = toRebalance.getType();
-					if (type[0] == 2 && type[1] == 2 && toRebalance.getLeft() == EXT && toRebalance.getRight() == EXT) {
-						toRebalance.demote();
+					if (toRebalance.getLeft() == EXT && toRebalance.getRight() == EXT && toRebalance.getRank() == 1) {
+						toRebalance.demote(); // a (2,2) leaf
 						rebalances++;
+						if (this.metrics != null)
+							this.metrics.demotions.increment();
 					}
 					return rebalances;
 				}
-				if (leftType[0] == 2) {//Sym case 4
+				if (leftLeftDiff == 2) {//Sym case 4
 					IWAVLNode toRotate = left.getRight();
 					leftRotate(toRotate);
 					rightRotate(toRotate);
@@ -470,9 +868,106 @@ public class WAVLTree {
 	 * returns -1 if an item with key k was not found in the tree.
 	 */
 	public int delete(int k) {
+		WAVLTreeMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
 		IWAVLNode toDelete = recSearch(this.root, k); // get node to delete
-		if (toDelete == null || toDelete.getKey() != k) // if key not in tree
-			return -1;
+		int rebalances = -1;
+		if (toDelete != null && toDelete.getKey() == k) { // if key is in tree
+			rebalances = deleteNode(toDelete);
+			recycle(toDelete);
+		}
+		if (metrics != null)
+			metrics.recordDelete(k, rebalances, start);
+		return rebalances;
+	}
+
+	/**
+	 * public int deleteAll(int[] keys)
+	 * <p>
+	 * deletes the items with keys in keys, like calling delete() for each of them.
+	 * the batch is sorted first, and each key is searched for with fingerSearch() from the successor
+	 * of the key deleted before it, so neighbouring keys share the search path,
+	 * and sizes and aggregates are recomputed once at the end, like in insertAll().
+	 * with metrics enabled, each key is recorded as a delete(), with its own latency.
+	 * returns the total number of rebalancing operations of all deletions (keys not in the tree add nothing)
+	 */
+	public int deleteAll(int[] keys) {
+		WAVLTreeMetrics metrics = this.metrics;
+		long[] order = sortedOrder(keys);
+		int rebalances = 0;
+		IWAVLNode finger = EXT;
+		this.staleFrom = staleFrom(this.size(), order.length);
+		try {
+			for (long packed : order) {
+				int k = (int) (packed >> 32);
+				long start = metrics == null ? 0 : System.nanoTime();
+				IWAVLNode toDelete = fingerSearch(finger, k); // null once the tree is empty
+				int deleted = -1;
+				if (toDelete != null && toDelete.getKey() == k) {
+					finger = successor(toDelete); // stays in the tree, even if it takes toDelete's place
+					deleted = deleteNode(toDelete);
+					rebalances += deleted;
+					recycle(toDelete);
+				} else if (toDelete != null) { // not in tree
+					finger = toDelete;
+				}
+				if (metrics != null)
+					metrics.recordDelete(k, deleted, start);
+			}
+		} finally {
+			this.staleFrom = NOT_BATCHING;
+			refresh(this.root);
+		}
+		return rebalances;
+	}
+
+	/**
+	 * private static int staleFrom(int size, int batch)
+	 * <p>
+	 * returns the subtree size from which a batch of keys into a tree of size nodes leaves sizes stale:
+	 * a subtree of twice size / batch nodes or more is likely an ancestor of several keys of the batch,
+	 * so it's cheaper to recompute it once at the end than to walk it once per key.
+	 * smaller subtrees are updated key by key, as they are still in cache from the search
+	 */
+	private static int staleFrom(int size, int batch) {
+		return (int) Math.max(2, 2L * size / Math.max(1, batch));
+	}
+
+	/**
+	 * private void markStale(IWAVLNode node)
+	 * <p>
+	 * marks node and its ancestors stale, for refresh() to recompute. stops at the first ancestor already stale,
+	 * as all of its own ancestors are: a rotation under a stale node leaves both rotated nodes stale
+	 */
+	private void markStale(IWAVLNode node) {
+		while (node != EXT && node.getSubtreeSize() != STALE) {
+			node.setSize(STALE);
+			node = node.getParent();
+		}
+	}
+
+	/**
+	 * private int refresh(IWAVLNode node)
+	 * <p>
+	 * recomputes the subtree size and aggregate of every stale node under node, children first,
+	 * and returns node's subtree size. visits only the stale nodes and their children
+	 */
+	private int refresh(IWAVLNode node) {
+		if (node.getSubtreeSize() != STALE) // EXT, or a subtree the batch didn't touch
+			return node.getSubtreeSize();
+		node.setSize(refresh(node.getLeft()) + refresh(node.getRight()) + 1);
+		pull(node);
+		return node.getSubtreeSize();
+	}
+
+	/**
+	 * private int deleteNode(IWAVLNode toDelete)
+	 * <p>
+	 * same as delete(k), once the search found toDelete, the node with key k
+	 */
+	private int deleteNode(IWAVLNode toDelete) {
+		if (toDelete == FINGER) // don't keep a finger on a deleted node
+			FINGER = EXT;
 		if (toDelete == this.root && toDelete.getRank() == 0) {//if key is the root and a leaf
 			this.root = EXT;
 			MIN = EXT;
@@ -483,7 +978,7 @@ public class WAVLTree {
 			return 0;
 		}
 		boolean fixedExtremes = false; //flag if already changed MIN & MAX
-		if (toDelete == this.root && this.size() == 2) { //if key is the root and has one child, switch with his son
+		if (toDelete == this.root && (toDelete.getLeft() == EXT || toDelete.getRight() == EXT)) { //if key is the root and has one child, switch with his son
 			if (toDelete.getRight() != EXT)
 				switchRight(toDelete.getRight(), toDelete);
 			if (toDelete.getLeft() != EXT)
@@ -520,8 +1015,13 @@ public class WAVLTree {
 		}
 		toDelete.setRight(null);
 		toDelete.setLeft(null);
-		while (temp != EXT && temp != null) {// increase all needed subtree sizes
+		while (temp != EXT && temp != null && temp.getSubtreeSize() != STALE) {// increase all needed subtree sizes
+			if (temp.getSubtreeSize() >= this.staleFrom) { // in deleteAll(), leave the big ones to its end
+				markStale(temp);
+				break;
+			}
 			temp.setSize(temp.getSubtreeSize() - 1);
+			pull(temp); // also fixes the successor's aggregate, if it was switched into an ancestor
 			temp = temp.getParent();
 		}
 		int rebalances = deleteRebalance(parent);
@@ -532,173 +1032,1021 @@ public class WAVLTree {
 
 
 	/**
-	 * public String min()
+	 * private IWAVLNode detach(IWAVLNode node)
 	 * <p>
-	 * Returns the info of the item with the smallest key in the tree,
-	 * or null if the tree is empty
+	 * cuts node from its parent's side (node keeps its subtree) and returns it
 	 */
-	public String min() {
-		if (this.root == EXT) // if tree is empty
-			return null;
-		return MIN.getValue(); // returns value of minimal node
+	private IWAVLNode detach(IWAVLNode node) {
+		if (node != EXT)
+			node.setParent(EXT);
+		return node;
 	}
 
-
 	/**
-	 * public String max()
+	 * private void discard(IWAVLNode node)
 	 * <p>
-	 * Returns the info of the item with the largest key in the tree,
-	 * or null if the tree is empty
+	 * clears the links of a node that was dropped from the tree, like delete() does
 	 */
-	public String max() { // same as min(), only other direction
-		if (this.root == EXT) // tree is empty
-			return null;
-		return MAX.getValue(); // returns value of maximal node
-	}
-
-	private void recIOWalkKeys(IWAVLNode node, IntStack keysStack) {//performs inorder recursive walk on tree, using stack
-		if (node == EXT)
-			return;
-		recIOWalkKeys(node.getLeft(), keysStack);
-		keysStack.push(node.getKey());
-		recIOWalkKeys(node.getRight(), keysStack);
+	private void discard(IWAVLNode node) {
+		if (node instanceof ArenaNode) // nobody can reach its info anymore
+			((ArenaNode) node).release();
+		node.setParent(null);
+		node.setLeft(null);
+		node.setRight(null);
 	}
 
 	/**
-	 * public int[] keysToArray()
+	 * private void link(IWAVLNode node, IWAVLNode left, IWAVLNode right, int rank)
 	 * <p>
-	 * Returns a sorted array which contains all keys in the tree,
-	 * or an empty array if the tree is empty.
+	 * makes left and right node's children, and sets node's rank and subtree size
 	 */
-	public int[] keysToArray() {
-		IntStack keysStack = new IntStack(this.root.getSubtreeSize());
-		recIOWalkKeys(this.root, keysStack);
-		return keysStack.arr;
-	}
-
-	private void recIOWalkString(IWAVLNode node, StringStack infoStack) {//performs inorder recursive walk on tree, using stack
-		if (node == EXT)
-			return;
-		recIOWalkString(node.getLeft(), infoStack);
-		infoStack.push(node.getValue());
-		recIOWalkString(node.getRight(), infoStack);
+	private void link(IWAVLNode node, IWAVLNode left, IWAVLNode right, int rank) {
+		node.setLeft(left);
+		node.setRight(right);
+		if (left != EXT)
+			left.setParent(node);
+		if (right != EXT)
+			right.setParent(node);
+		node.setRank(rank);
+		node.setSize(left.getSubtreeSize() + right.getSubtreeSize() + 1);
+		pull(node);
 	}
 
 	/**
-	 * public String[] infoToArray()
+	 * private IWAVLNode joinNodes(IWAVLNode left, IWAVLNode mid, IWAVLNode right)
 	 * <p>
-	 * Returns an array which contains all info in the tree,
-	 * sorted by their respective keys,
-	 * or an empty array if the tree is empty.
+	 * joins the detached subtrees left and right, using mid as the node between them,
+	 * and returns the root of the joined (detached) subtree.
+	 * mid is hung on the spine of the taller subtree, at the first node with rank not above the other one,
+	 * and the result is rebalanced upwards like an insertion.
+	 * takes O(|rank(left) - rank(right)| + 1)
+	 * <p>
+	 * precondition: all keys of left < mid.getKey() < all keys of right
 	 */
-	public String[] infoToArray() {
-		StringStack infoStack = new StringStack(this.root.getSubtreeSize());
-		recIOWalkString(this.root, infoStack);
-		return infoStack.getArray();
+	private IWAVLNode joinNodes(IWAVLNode left, IWAVLNode mid, IWAVLNode right) {
+		int leftRank = left.getRank();
+		int rightRank = right.getRank();
+		if (leftRank <= rightRank + 1 && rightRank <= leftRank + 1) { // close enough, mid becomes the root
+			link(mid, left, right, Math.max(leftRank, rightRank) + 1);
+			mid.setParent(EXT);
+			return mid;
+		}
+		IWAVLNode parent = EXT;
+		if (leftRank > rightRank) { // walk down left's right spine
+			IWAVLNode spine = left;
+			while (spine.getRank() > rightRank) {
+				parent = spine;
+				spine = spine.getRight();
+			}
+			link(mid, spine, right, rightRank + 1);
+			parent.setRight(mid);
+		} else { // symmetric, walk down right's left spine
+			IWAVLNode spine = right;
+			while (spine.getRank() > leftRank) {
+				parent = spine;
+				spine = spine.getLeft();
+			}
+			link(mid, left, spine, leftRank + 1);
+			parent.setLeft(mid);
+		}
+		mid.setParent(parent);
+		for (IWAVLNode x = parent; x != EXT; x = x.getParent()) { // fix subtree sizes along the spine
+			x.setSize(x.getLeft().getSubtreeSize() + x.getRight().getSubtreeSize() + 1);
+			pull(x);
+		}
+		joinRebalance(mid);
+		IWAVLNode top = mid;
+		while (top.getParent() != EXT) // rotations might have replaced the old root
+			top = top.getParent();
+		return top;
 	}
 
-
 	/**
-	 * public int size()
-	 * <p>
-	 * Returns the number of nodes in the tree.
+	 * private void joinRebalance(IWAVLNode node)
 	 * <p>
-	 * precondition: none
-	 * postcondition: none
+	 * rebalances upwards after node was hung on a spine by joinNodes().
+	 * same as insertRebalance(), except node might be a (1,1) node when it is a 0-child,
+	 * in which case a single rotation and a promotion leave node as a 0-child or 1-child one level up
 	 */
-	public int size() {
-		return this.root.getSubtreeSize(); // size should be explicitly kept
+	private void joinRebalance(IWAVLNode node) {
+		IWAVLNode parent = node.getParent();
+		while (parent != EXT && parent.getRank() == node.getRank()) {
+			boolean isLeft = parent.getLeft() == node;
+			IWAVLNode sibling = isLeft ? parent.getRight() : parent.getLeft();
+			if (parent.getRank() - sibling.getRank() == 1) { // promote and go up
+				parent.promote();
+				node = parent;
+				parent = node.getParent();
+				continue;
+			}
+			IWAVLNode inner = isLeft ? node.getRight() : node.getLeft();
+			IWAVLNode outer = isLeft ? node.getLeft() : node.getRight();
+			if (node.getRank() - inner.getRank() == 2) { // single rotation
+				if (isLeft)
+					rightRotate(node);
+				else
+					leftRotate(node);
+				parent.demote();
+				return;
+			}
+			if (node.getRank() - outer.getRank() == 2) { // double rotation around node's inner child
+				if (isLeft) {
+					leftRotate(inner);
+					rightRotate(inner);
+				} else {
+					rightRotate(inner);
+					leftRotate(inner);
+				}
+				node.demote();
+				parent.demote();
+				inner.promote();
+				return;
+			}
+			if (isLeft) // (1,1) node, rotate it up and keep going
+				rightRotate(node);
+			else
+				leftRotate(node);
+			node.promote();
+			parent = node.getParent();
+		}
 	}
 
-
 	/**
-	 * public IWAVLNode selectNode(int i){
+	 * private IWAVLNode[] splitNodes(IWAVLNode node, int k)
 	 * <p>
-	 * Returns the value of the i'th smallest key of a given node's Subtree
-	 * precondition: size() >= i > 0
-	 * postcondition: none
+	 * splits node's detached subtree by k, and returns {subtree of keys smaller than k,
+	 * the node with key k (null if there is none), subtree of keys bigger than k}.
+	 * both subtrees are detached. takes O(log n)
 	 */
-	public IWAVLNode selectNode(IWAVLNode x, int i) {//works like algorithm shown in class
-		int r = x.getLeft().getSubtreeSize() + 1;
-		if (i == r)
-			return x;
-		if (i < r)
-			return selectNode(x.getLeft(), i);
-		if (i > r)
-			return selectNode(x.getRight(), i - r);
-		return null;
+	private IWAVLNode[] splitNodes(IWAVLNode node, int k) {
+		if (node == EXT)
+			return new IWAVLNode[]{EXT, null, EXT};
+		IWAVLNode left = detach(node.getLeft());
+		IWAVLNode right = detach(node.getRight());
+		if (node.getKey() == k) {
+			node.setLeft(EXT);
+			node.setRight(EXT);
+			return new IWAVLNode[]{left, node, right};
+		}
+		IWAVLNode[] parts;
+		if (k < node.getKey()) { // node and its right subtree go to the bigger side
+			parts = splitNodes(left, k);
+			parts[2] = joinNodes(parts[2], node, right);
+		} else { // symmetric
+			parts = splitNodes(right, k);
+			parts[0] = joinNodes(left, node, parts[0]);
+		}
+		return parts;
 	}
 
 	/**
-	 * public String select(int i)
+	 * private IWAVLNode[] splitLast(IWAVLNode node)
 	 * <p>
-	 * Returns the value of the i'th smallest key (return -1 if tree is empty)
-	 * Example 1: select(1) returns the value of the node with minimal key
-	 * Example 2: select(size()) returns the value of the node with maximal key
-	 * Example 3: select(2) returns the value 2nd smallest minimal node, i.e the value of the node minimal node's successor
+	 * removes the maximal node from node's detached subtree,
+	 * and returns {the rest of the subtree, the maximal node}. takes O(log n)
 	 * <p>
-	 * precondition: size() >= i > 0
-	 * postcondition: none
+	 * precondition: node != EXT
 	 */
-	public String select(int i) {
-		if (this.root == EXT || this.size() < i)
-			return null;
-		IWAVLNode x = MIN;
-		while (x.getSubtreeSize() < i)
-			x = x.getParent();     //find the LCA of the minimal key and i'th smallest key
-		IWAVLNode toReturn = selectNode(x, i); //perform the algo shown in class starting from the LCA, to achieve O(logi)
-		if (toReturn == null)
-			return null;
-		return toReturn.getValue();
+	private IWAVLNode[] splitLast(IWAVLNode node) {
+		IWAVLNode left = detach(node.getLeft());
+		IWAVLNode right = detach(node.getRight());
+		if (right == EXT) {
+			node.setLeft(EXT);
+			return new IWAVLNode[]{left, node};
+		}
+		IWAVLNode[] parts = splitLast(right);
+		parts[0] = joinNodes(left, node, parts[0]);
+		return parts;
 	}
 
 	/**
-	 * public IWAVLNode getRoot()
+	 * private IWAVLNode joinNodes(IWAVLNode left, IWAVLNode right)
 	 * <p>
-	 * Returns the root WAVL node, or null if the tree is empty
+	 * joins the detached subtrees left and right without a node between them,
+	 * by using left's maximal node. takes O(log n)
 	 * <p>
-	 * precondition: none
-	 * postcondition: none
+	 * precondition: all keys of left < all keys of right
 	 */
-	public IWAVLNode getRoot() {
-		return this.root == EXT ? null : this.root; // check if tree is empty
+	private IWAVLNode joinNodes(IWAVLNode left, IWAVLNode right) {
+		if (left == EXT)
+			return right;
+		if (right == EXT)
+			return left;
+		IWAVLNode[] parts = splitLast(left);
+		return joinNodes(parts[0], parts[1], right);
 	}
 
 	/**
-	 * private IWAVLNode minNode(IWAVLNode)
+	 * private IWAVLNode unionNodes(IWAVLNode a, IWAVLNode b)
 	 * <p>
-	 * Returns the node with the smallest key of given node's subtree
+	 * returns the root of the union of the detached subtrees a and b.
+	 * for a key in both, a's node is kept and b's is dropped.
+	 * takes O(m log(n/m + 1)), m and n being the sizes of the smaller and bigger subtree
 	 */
-	private IWAVLNode minNode(IWAVLNode node) {
-		while (node.getLeft() != EXT) // keep going left, stop before external leaf
-			node = node.getLeft();
-		return node; // found min()
+	private IWAVLNode unionNodes(IWAVLNode a, IWAVLNode b) {
+		if (a == EXT)
+			return b;
+		if (b == EXT)
+			return a;
+		IWAVLNode left = detach(a.getLeft());
+		IWAVLNode right = detach(a.getRight());
+		IWAVLNode[] parts = splitNodes(b, a.getKey()); // split b by a's root and merge each side
+		if (parts[1] != null)
+			discard(parts[1]);
+		left = unionNodes(left, parts[0]);
+		right = unionNodes(right, parts[2]);
+		return joinNodes(left, a, right);
 	}
 
 	/**
-	 * private IWAVLNode successor(IWAVLNode x)
-	 * <p>
-	 * Returns the node with key following x according to the sorted order of keys.
+	 * private IWAVLNode intersectNodes(IWAVLNode a, IWAVLNode b)
 	 * <p>
-	 * precondition: x is not the maximal node of the tree
-	 * postcondition: none
+	 * returns the root of the intersection of the detached subtrees a and b,
+	 * holding a's nodes. takes O(m log(n/m + 1)), same as unionNodes()
 	 */
-	private IWAVLNode successor(IWAVLNode x) {//works like algorithm shown in class
-		if (x.getRight() != EXT) {
-			return minNode(x.getRight());
+	private IWAVLNode intersectNodes(IWAVLNode a, IWAVLNode b) {
+		if (a == EXT || b == EXT)
+			return EXT;
+		IWAVLNode left = detach(a.getLeft());
+		IWAVLNode right = detach(a.getRight());
+		IWAVLNode[] parts = splitNodes(b, a.getKey());
+		left = intersectNodes(left, parts[0]);
+		right = intersectNodes(right, parts[2]);
+		if (parts[1] != null) { // a's root is in both
+			discard(parts[1]);
+			return joinNodes(left, a, right);
 		}
-		IWAVLNode y = x.getParent();
-		while (y != EXT && x == y.getRight()) {
-			x = y;
-			y = x.getParent();
-		}
-		return y;
+		discard(a);
+		return joinNodes(left, right);
 	}
 
 	/**
-	 * private IWAVLNode maxNode(IWAVLNode)
+	 * private IWAVLNode differenceNodes(IWAVLNode a, IWAVLNode b)
 	 * <p>
-	 * Returns the node with the biggest key of given node's subtree
+	 * returns the root of the detached subtree a without the keys of the detached subtree b.
+	 * takes O(m log(n/m + 1)), same as unionNodes()
+	 */
+	private IWAVLNode differenceNodes(IWAVLNode a, IWAVLNode b) {
+		if (a == EXT)
+			return EXT;
+		if (b == EXT)
+			return a;
+		IWAVLNode left = detach(a.getLeft());
+		IWAVLNode right = detach(a.getRight());
+		IWAVLNode[] parts = splitNodes(b, a.getKey());
+		left = differenceNodes(left, parts[0]);
+		right = differenceNodes(right, parts[2]);
+		if (parts[1] == null) // a's root isn't in b, keep it
+			return joinNodes(left, a, right);
+		discard(parts[1]);
+		discard(a);
+		return joinNodes(left, right);
+	}
+
+	/**
+	 * private void setRoot(IWAVLNode root)
+	 * <p>
+	 * makes the detached subtree root this tree's content, and recomputes MIN and MAX
+	 */
+	private void setRoot(IWAVLNode root) {
+		this.root = detach(root);
+		this.MIN = root == EXT ? EXT : minNode(root);
+		this.MAX = root == EXT ? EXT : maxNode(root);
+		this.FINGER = EXT;
+	}
+
+	/**
+	 * public WAVLTree split(int k)
+	 * <p>
+	 * removes all items with keys bigger than k from this tree, and returns them as a new tree.
+	 * the item with key k, if there is one, stays in this tree.
+	 * takes O(log n)
+	 */
+	public WAVLTree split(int k) {
+		IWAVLNode[] parts = splitNodes(detach(this.root), k);
+		IWAVLNode smaller = parts[0];
+		if (parts[1] != null) // keep k on this side
+			smaller = joinNodes(smaller, parts[1], EXT);
+		this.setRoot(smaller);
+		WAVLTree bigger = new WAVLTree();
+		bigger.augmentation = this.augmentation; // aggregates of the moved nodes are still right
+		bigger.setRoot(parts[2]);
+		return bigger;
+	}
+
+	/**
+	 * public boolean join(WAVLTree other)
+	 * <p>
+	 * moves all items of other into this tree, leaving other empty,
+	 * if all keys of other are bigger than all keys of this tree, or all of them are smaller.
+	 * returns false (and changes nothing) if the key ranges overlap.
+	 * takes O(log n), plus O(m) to recompute other's aggregates if its augmentation is not this tree's.
+	 * other keeps its own augmentation
+	 */
+	public boolean join(WAVLTree other) {
+		if (other == this)
+			return false;
+		if (other.empty())
+			return true;
+		if (this.empty()) {
+			this.setRoot(this.takeNodes(other));
+			return true;
+		}
+		if (this.MAX.getKey() < other.MIN.getKey())
+			this.setRoot(joinNodes(this.root, this.takeNodes(other)));
+		else if (other.MAX.getKey() < this.MIN.getKey())
+			this.setRoot(joinNodes(this.takeNodes(other), this.root));
+		else // ranges overlap
+			return false;
+		return true;
+	}
+
+	/**
+	 * private IWAVLNode takeNodes(WAVLTree other)
+	 * <p>
+	 * empties other and returns its detached root, with aggregates under this tree's augmentation.
+	 * other's own augmentation is put back afterwards, which recomputes nothing, as other is empty by then
+	 */
+	private IWAVLNode takeNodes(WAVLTree other) {
+		Augmentation own = other.augmentation;
+		other.setAugmentation(this.augmentation); // recomputes the moved aggregates, if the augmentations differ
+		IWAVLNode nodes = detach(other.root);
+		other.setRoot(EXT);
+		other.setAugmentation(own);
+		return nodes;
+	}
+
+	/**
+	 * public void union(WAVLTree other)
+	 * <p>
+	 * moves all items of other into this tree, leaving other empty.
+	 * for a key in both trees, this tree's info is kept, like insert() does.
+	 * takes O(m log(n/m + 1)), m and n being the sizes of the smaller and bigger tree,
+	 * plus O(|other|) to recompute other's aggregates if its augmentation is not this tree's.
+	 * other keeps its own augmentation
+	 */
+	public void union(WAVLTree other) {
+		if (other == this)
+			return;
+		this.setRoot(unionNodes(detach(this.root), this.takeNodes(other)));
+	}
+
+	/**
+	 * public void intersect(WAVLTree other)
+	 * <p>
+	 * removes from this tree all items whose keys are not in other, leaving other empty.
+	 * takes O(m log(n/m + 1)), same as union()
+	 */
+	public void intersect(WAVLTree other) {
+		if (other == this)
+			return;
+		this.setRoot(intersectNodes(detach(this.root), this.takeNodes(other)));
+	}
+
+	/**
+	 * public void difference(WAVLTree other)
+	 * <p>
+	 * removes from this tree all items whose keys are in other, leaving other empty.
+	 * takes O(m log(n/m + 1)), same as union()
+	 */
+	public void difference(WAVLTree other) {
+		if (other == this) {
+			this.setRoot(EXT);
+			return;
+		}
+		this.setRoot(differenceNodes(detach(this.root), this.takeNodes(other)));
+	}
+
+
+	/**
+	 * public String min()
+	 * <p>
+	 * Returns the info of the item with the smallest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public String min() {
+		if (this.root == EXT) // if tree is empty
+			return null;
+		return MIN.getValue(); // returns value of minimal node
+	}
+
+
+	/**
+	 * public String max()
+	 * <p>
+	 * Returns the info of the item with the largest key in the tree,
+	 * or null if the tree is empty
+	 */
+	public String max() { // same as min(), only other direction
+		if (this.root == EXT) // tree is empty
+			return null;
+		return MAX.getValue(); // returns value of maximal node
+	}
+
+	/**
+	 * public IWAVLNode peekFirst()
+	 * <p>
+	 * Returns the node with the smallest key in the tree, or null if the tree is empty. O(1)
+	 */
+	public IWAVLNode peekFirst() {
+		return MIN == EXT ? null : MIN;
+	}
+
+	/**
+	 * public IWAVLNode peekLast()
+	 * <p>
+	 * Returns the node with the largest key in the tree, or null if the tree is empty. O(1)
+	 */
+	public IWAVLNode peekLast() {
+		return MAX == EXT ? null : MAX;
+	}
+
+	/**
+	 * public IWAVLNode pollFirst()
+	 * <p>
+	 * removes the item with the smallest key from the tree and returns its node
+	 * (cut out of the tree, but still holding the key and info), or null if the tree is empty.
+	 * starts at MIN instead of searching from the root, and the new MIN is found with successor(),
+	 * so apart from fixing subtree sizes on the way up, this takes amortized O(1)
+	 */
+	public IWAVLNode pollFirst() {
+		return poll(MIN);
+	}
+
+	/**
+	 * public IWAVLNode pollLast()
+	 * <p>
+	 * same as pollFirst(), for the item with the largest key
+	 */
+	public IWAVLNode pollLast() {
+		return poll(MAX);
+	}
+
+	private IWAVLNode poll(IWAVLNode extreme) {//MIN or MAX has at most one child, so deleteNode() never switches it
+		if (extreme == EXT) // tree is empty
+			return null;
+		WAVLTreeMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		int rebalances = deleteNode(extreme);
+		if (extreme instanceof ArenaNode) // the caller keeps the node, so its info must outlive the arena's copy
+			((ArenaNode) extreme).detachValue();
+		if (metrics != null)
+			metrics.recordDelete(extreme.getKey(), rebalances, start);
+		return extreme;
+	}
+
+	/**
+	 * public int[] keysToArray()
+	 * <p>
+	 * Returns a sorted array which contains all keys in the tree,
+	 * or an empty array if the tree is empty.
+	 */
+	public int[] keysToArray() {
+		int[] keys = new int[this.size()];
+		this.toArrays(keys, null);
+		return keys;
+	}
+
+	/**
+	 * public String[] infoToArray()
+	 * <p>
+	 * Returns an array which contains all info in the tree,
+	 * sorted by their respective keys,
+	 * or an empty array if the tree is empty.
+	 */
+	public String[] infoToArray() {
+		String[] values = new String[this.size()];
+		this.toArrays(null, values);
+		return values;
+	}
+
+	/**
+	 * public void toArrays(int[] keys, String[] values)
+	 * <p>
+	 * fills keys with all keys in the tree, sorted, and values with their respective info,
+	 * in a single inorder walk. either array may be null, to skip it.
+	 * the walk goes from MIN with successor(), so it uses no stack and takes O(n)
+	 * <p>
+	 * precondition: keys and values are null or at least size() long
+	 */
+	public void toArrays(int[] keys, String[] values) {
+		IWAVLNode node = this.MIN;
+		for (int j = 0, n = this.size(); j < n; j++, node = successor(node)) {
+			if (keys != null)
+				keys[j] = node.getKey();
+			if (values != null)
+				values[j] = node.getValue();
+		}
+	}
+
+	/**
+	 * public FrozenWAVLTree freeze()
+	 * <p>
+	 * Returns an immutable copy of the tree's items, laid out in primitive arrays for fast lookups.
+	 * later changes to this tree don't affect the copy. takes O(n)
+	 */
+	public FrozenWAVLTree freeze() {
+		int[] keys = new int[this.size()];
+		String[] values = new String[keys.length];
+		this.toArrays(keys, values);
+		return new FrozenWAVLTree(keys, values);
+	}
+
+	/**
+	 * public void writeTo(Path path)
+	 * <p>
+	 * writes all items of the tree to path, in WAVLTreeFile's compact binary format:
+	 * delta encoded keys, length prefixed UTF-8 info and a checksum. takes O(n)
+	 */
+	public void writeTo(Path path) throws IOException {
+		WAVLTreeFile.write(this, path);
+	}
+
+	/**
+	 * public static WAVLTree readFrom(Path path)
+	 * <p>
+	 * returns a tree holding the items writeTo() wrote to path, built bottom-up in O(n).
+	 * throws IOException if the file isn't one writeTo() wrote, or its checksum doesn't match
+	 */
+	public static WAVLTree readFrom(Path path) throws IOException {
+		return WAVLTreeFile.read(path);
+	}
+
+	/**
+	 * private IWAVLNode ceilingNode(long k)
+	 * <p>
+	 * Returns the node with the smallest key not below k, or EXT if there is none
+	 */
+	private IWAVLNode ceilingNode(long k) {
+		IWAVLNode candidate = EXT;
+		IWAVLNode node = this.root;
+		while (node != EXT) {
+			if (node.getKey() >= k) { // node fits, look for a smaller one on the left
+				candidate = node;
+				node = node.getLeft();
+			} else {
+				node = node.getRight();
+			}
+		}
+		return candidate;
+	}
+
+	/**
+	 * private IWAVLNode lowerNode(long k)
+	 * <p>
+	 * Returns the node with the biggest key below k, or EXT if there is none
+	 */
+	private IWAVLNode lowerNode(long k) {
+		IWAVLNode candidate = EXT;
+		IWAVLNode node = this.root;
+		while (node != EXT) {
+			if (node.getKey() < k) { // node fits, look for a bigger one on the right
+				candidate = node;
+				node = node.getRight();
+			} else {
+				node = node.getLeft();
+			}
+		}
+		return candidate;
+	}
+
+	/**
+	 * public Cursor cursor(int lo, int hi, boolean descending)
+	 * <p>
+	 * Returns a cursor over the nodes with keys in [lo, hi), in ascending or descending order of keys.
+	 * the cursor finds its first node in O(log n), and each following one with successor() or predecessor(),
+	 * in O(1) amortized, without copying anything
+	 */
+	public Cursor cursor(int lo, int hi, boolean descending) {
+		return new Cursor(lo, hi, descending);
+	}
+
+	/**
+	 * public Cursor cursor()
+	 * <p>
+	 * Returns a cursor over all nodes of the tree, in ascending order of keys
+	 */
+	public Cursor cursor() {
+		return new Cursor(Long.MIN_VALUE, Long.MAX_VALUE, false);
+	}
+
+	/**
+	 * public Spliterator<IWAVLNode> spliterator()
+	 * <p>
+	 * Returns a spliterator over all nodes of the tree, in ascending order of keys.
+	 * it splits by rank ranges, using the subtree sizes, so
+	 * StreamSupport.stream(tree.spliterator(), true) scans the tree in parallel without copying it.
+	 * the tree must not be modified while the spliterator is in use
+	 */
+	public Spliterator<IWAVLNode> spliterator() {
+		return new NodeSpliterator(0, this.size());
+	}
+
+
+	/**
+	 * public int size()
+	 * <p>
+	 * Returns the number of nodes in the tree.
+	 * <p>
+	 * precondition: none
+	 * postcondition: none
+	 */
+	public int size() {
+		return this.root.getSubtreeSize(); // size should be explicitly kept
+	}
+
+
+	/**
+	 * public IWAVLNode selectNode(int i){
+	 * <p>
+	 * Returns the value of the i'th smallest key of a given node's Subtree
+	 * precondition: size() >= i > 0
+	 * postcondition: none
+	 */
+	public IWAVLNode selectNode(IWAVLNode x, int i) {//works like algorithm shown in class
+		int r = x.getLeft().getSubtreeSize() + 1;
+		if (i == r)
+			return x;
+		if (i < r)
+			return selectNode(x.getLeft(), i);
+		if (i > r)
+			return selectNode(x.getRight(), i - r);
+		return null;
+	}
+
+	/**
+	 * public String select(int i)
+	 * <p>
+	 * Returns the value of the i'th smallest key (return -1 if tree is empty)
+	 * Example 1: select(1) returns the value of the node with minimal key
+	 * Example 2: select(size()) returns the value of the node with maximal key
+	 * Example 3: select(2) returns the value 2nd smallest minimal node, i.e the value of the node minimal node's successor
+	 * <p>
+	 * precondition: size() >= i > 0
+	 * postcondition: none
+	 */
+	public String select(int i) {
+		if (this.root == EXT || this.size() < i)
+			return null;
+		IWAVLNode x = MIN;
+		while (x.getSubtreeSize() < i)
+			x = x.getParent();     //find the LCA of the minimal key and i'th smallest key
+		IWAVLNode toReturn = selectNode(x, i); //perform the algo shown in class starting from the LCA, to achieve O(logi)
+		if (toReturn == null)
+			return null;
+		return toReturn.getValue();
+	}
+
+	/**
+	 * private int countBelow(int k, boolean inclusive)
+	 * <p>
+	 * returns the number of keys smaller than k (or equal to k, if inclusive),
+	 * by walking down once and adding up the sizes of subtrees left behind on the left. O(log n)
+	 */
+	private int countBelow(int k, boolean inclusive) {
+		int count = 0;
+		IWAVLNode node = this.root;
+		while (node != EXT) {
+			if (node.getKey() < k || (inclusive && node.getKey() == k)) { // node and its left subtree are below
+				count += node.getLeft().getSubtreeSize() + 1;
+				node = node.getRight();
+			} else {
+				node = node.getLeft();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * public int rank(int k)
+	 * <p>
+	 * Returns the number of keys in the tree smaller than k.
+	 * if k is in the tree, select(rank(k) + 1) returns its info. O(log n)
+	 */
+	public int rank(int k) {
+		return countBelow(k, false);
+	}
+
+	/**
+	 * public int countInRange(int lo, int hi)
+	 * <p>
+	 * Returns the number of keys in the tree between lo and hi, both included,
+	 * or 0 if lo > hi. O(log n)
+	 */
+	public int countInRange(int lo, int hi) {
+		if (lo > hi)
+			return 0;
+		return countBelow(hi, true) - countBelow(lo, false);
+	}
+
+	/**
+	 * public void enableNodePool(int capacity)
+	 * <p>
+	 * makes delete() and deleteAll() keep up to capacity deleted nodes, and insert() reuse them
+	 * instead of allocating, so delete-heavy workloads make less garbage.
+	 * <p>
+	 * with a pool, a deleted node may come back holding another item, so a node reference returned by
+	 * getRoot(), recSearch(), selectNode(), peekFirst() or a Cursor is no longer valid once its item is deleted.
+	 * nodes returned by pollFirst() and pollLast() are never reused, and stay valid.
+	 * <p>
+	 * precondition: capacity >= 0
+	 */
+	public void enableNodePool(int capacity) {
+		this.poolCapacity = capacity;
+		while (this.poolSize > capacity) // shrink to the new capacity
+			this.takePooled();
+	}
+
+	/**
+	 * public void disableNodePool()
+	 * <p>
+	 * drops the pooled nodes, and goes back to allocating a node per insert()
+	 */
+	public void disableNodePool() {
+		this.enableNodePool(0);
+	}
+
+	private WAVLNode takePooled() {//pops the first pooled node
+		WAVLNode node = this.pool;
+		this.pool = (WAVLNode) node.getRight();
+		node.setRight(null);
+		this.poolSize--;
+		return node;
+	}
+
+	private IWAVLNode createNode(int k, String i) {
+		return this.arena == null ? new WAVLNode(k, i) : new ArenaNode(this.arena, k, i);
+	}
+
+	private IWAVLNode newNode(int k, String i) {
+		if (this.pool == null)
+			return createNode(k, i);
+		WAVLNode node = this.takePooled();
+		node.reset(k, i);
+		return node;
+	}
+
+	private void recycle(IWAVLNode node) {//deleteNode() already cut node's links
+		if (node instanceof ArenaNode)
+			((ArenaNode) node).release();
+		if (this.poolSize >= this.poolCapacity || !(node instanceof WAVLNode))
+			return;
+		WAVLNode pooled = (WAVLNode) node;
+		pooled.reset(0, null); // don't keep the info alive
+		pooled.setRight(this.pool);
+		this.pool = pooled;
+		this.poolSize++;
+	}
+
+	/**
+	 * public void enableValueArena()
+	 * <p>
+	 * moves the info of all items into a ValueArena, packed in shared byte pages,
+	 * so each node keeps an int handle instead of a String. info is decoded again on every getValue(),
+	 * by search(), select(), min(), max(), infoToArray() and the rest.
+	 * arena space of deleted items is reclaimed by compacting the arena once half of it is dead.
+	 * <p>
+	 * rebuilds the tree from new nodes in O(n), so node references taken before are no longer valid
+	 */
+	public void enableValueArena() {
+		if (this.arena != null)
+			return;
+		this.arena = new ValueArena();
+		this.rebuildNodes();
+	}
+
+	/**
+	 * public void disableValueArena()
+	 * <p>
+	 * moves the info of all items back into Strings held by the nodes, rebuilding the tree like enableValueArena()
+	 */
+	public void disableValueArena() {
+		if (this.arena == null)
+			return;
+		this.arena = null;
+		this.rebuildNodes();
+	}
+
+	/**
+	 * public long valueArenaBytes()
+	 * <p>
+	 * Returns the bytes held by the value arena (pages and handle tables), or 0 if there is none
+	 */
+	public long valueArenaBytes() {
+		return this.arena == null ? 0 : this.arena.footprint();
+	}
+
+	private void rebuildNodes() {//replaces every node by one createNode() makes, keeping items, augmentation and metrics
+		int[] keys = new int[this.size()];
+		String[] values = new String[keys.length];
+		this.toArrays(keys, values);
+		this.pool = null; // pooled nodes are of the old kind
+		this.poolSize = 0;
+		this.setRoot(buildSubtree(keys, values, 0, keys.length));
+		if (this.augmentation != null)
+			recomputeAggregates(this.root);
+	}
+
+	/**
+	 * public WAVLTreeMetrics enableMetrics()
+	 * <p>
+	 * starts counting operations, rebalancing steps and latencies of this tree, and returns the metrics.
+	 * if metrics are already enabled, returns the existing ones
+	 */
+	public WAVLTreeMetrics enableMetrics() {
+		if (this.metrics == null)
+			this.metrics = new WAVLTreeMetrics(this);
+		return this.metrics;
+	}
+
+	/**
+	 * public void disableMetrics()
+	 * <p>
+	 * stops counting. the metrics enableMetrics() returned keep their values, but aren't updated anymore
+	 */
+	public void disableMetrics() {
+		this.metrics = null;
+	}
+
+	/**
+	 * public WAVLTreeMetrics getMetrics()
+	 * <p>
+	 * Returns the metrics of this tree, or null if they are disabled
+	 */
+	public WAVLTreeMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	private int depth(IWAVLNode node) {//number of edges between node and the root, 0 if node is null
+		int depth = 0;
+		if (node == null)
+			return depth;
+		for (IWAVLNode x = node.getParent(); x != EXT; x = x.getParent())
+			depth++;
+		return depth;
+	}
+
+	/**
+	 * public void setAugmentation(Augmentation augmentation)
+	 * <p>
+	 * makes every node keep the aggregate of its subtree under augmentation
+	 * (or stops keeping aggregates, if augmentation is null).
+	 * aggregates are recomputed for the whole tree in O(n), and from then on are kept
+	 * along with subtree sizes, at O(1) lift() and combine() calls per node whose size changes
+	 */
+	public void setAugmentation(Augmentation augmentation) {
+		if (augmentation == this.augmentation)
+			return;
+		this.augmentation = augmentation;
+		if (augmentation != null)
+			recomputeAggregates(this.root);
+	}
+
+	/**
+	 * public Augmentation getAugmentation()
+	 * <p>
+	 * Returns the augmentation the tree keeps aggregates for, or null if there is none
+	 */
+	public Augmentation getAugmentation() {
+		return this.augmentation;
+	}
+
+	private void recomputeAggregates(IWAVLNode node) {//post-order, so children are done before their parent
+		if (node == EXT)
+			return;
+		recomputeAggregates(node.getLeft());
+		recomputeAggregates(node.getRight());
+		pull(node);
+	}
+
+	/**
+	 * private void pull(IWAVLNode node)
+	 * <p>
+	 * recomputes node's aggregate from its children's aggregates and its own item.
+	 * does nothing if the tree has no augmentation, so trees without one pay a single check
+	 */
+	private void pull(IWAVLNode node) {
+		Augmentation aug = this.augmentation;
+		if (aug == null)
+			return;
+		long below = aug.combine(aggregateOf(node.getLeft()), aug.lift(node.getKey(), node.getValue()));
+		((WAVLNode) node).setAggregate(aug.combine(below, aggregateOf(node.getRight())));
+	}
+
+	private long aggregateOf(IWAVLNode node) {//external leaves are shared by all trees, so they hold no aggregate
+		return node == EXT ? this.augmentation.identity() : ((WAVLNode) node).getAggregate();
+	}
+
+	private void swapAggregates(IWAVLNode node1, IWAVLNode node2) {//used when switching nodes, like subtree sizes
+		WAVLNode first = (WAVLNode) node1;
+		WAVLNode second = (WAVLNode) node2;
+		long temp = first.getAggregate();
+		first.setAggregate(second.getAggregate());
+		second.setAggregate(temp);
+	}
+
+	/**
+	 * public long aggregate()
+	 * <p>
+	 * Returns the aggregate of all items in the tree, or the identity if the tree is empty. O(1)
+	 * <p>
+	 * precondition: getAugmentation() != null
+	 */
+	public long aggregate() {
+		if (this.augmentation == null)
+			throw new IllegalStateException("no augmentation set");
+		return aggregateOf(this.root);
+	}
+
+	/**
+	 * public long aggregate(int lo, int hi)
+	 * <p>
+	 * Returns the aggregate of the items with keys between lo and hi, both included, combined in key order,
+	 * or the identity if there are none. walks down to the first node in range,
+	 * then down both boundaries of the range, combining whole subtrees on the way. O(log n)
+	 * <p>
+	 * precondition: getAugmentation() != null
+	 */
+	public long aggregate(int lo, int hi) {
+		Augmentation aug = this.augmentation;
+		if (aug == null)
+			throw new IllegalStateException("no augmentation set");
+		IWAVLNode split = this.root;
+		while (split != EXT && (split.getKey() < lo || split.getKey() > hi)) // find the highest node in range
+			split = split.getKey() < lo ? split.getRight() : split.getLeft();
+		if (split == EXT || lo > hi)
+			return aug.identity();
+		long leftPart = aug.identity(); // keys in [lo, split), built from the right
+		for (IWAVLNode node = split.getLeft(); node != EXT; ) {
+			if (node.getKey() >= lo) { // node and its right subtree are in range
+				long here = aug.combine(aug.lift(node.getKey(), node.getValue()), aggregateOf(node.getRight()));
+				leftPart = aug.combine(here, leftPart);
+				node = node.getLeft();
+			} else {
+				node = node.getRight();
+			}
+		}
+		long rightPart = aug.identity(); // keys in (split, hi], built from the left
+		for (IWAVLNode node = split.getRight(); node != EXT; ) {
+			if (node.getKey() <= hi) { // node and its left subtree are in range
+				long here = aug.combine(aggregateOf(node.getLeft()), aug.lift(node.getKey(), node.getValue()));
+				rightPart = aug.combine(rightPart, here);
+				node = node.getRight();
+			} else {
+				node = node.getLeft();
+			}
+		}
+		long middle = aug.combine(leftPart, aug.lift(split.getKey(), split.getValue()));
+		return aug.combine(middle, rightPart);
+	}
+
+	/**
+	 * public IWAVLNode getRoot()
+	 * <p>
+	 * Returns the root WAVL node, or null if the tree is empty
+	 * <p>
+	 * precondition: none
+	 * postcondition: none
+	 */
+	public IWAVLNode getRoot() {
+		return this.root == EXT ? null : this.root; // check if tree is empty
+	}
+
+	/**
+	 * private IWAVLNode minNode(IWAVLNode)
+	 * <p>
+	 * Returns the node with the smallest key of given node's subtree
+	 */
+	private IWAVLNode minNode(IWAVLNode node) {
+		while (node.getLeft() != EXT) // keep going left, stop before external leaf
+			node = node.getLeft();
+		return node; // found min()
+	}
+
+	/**
+	 * private IWAVLNode successor(IWAVLNode x)
+	 * <p>
+	 * Returns the node with key following x according to the sorted order of keys.
+	 * <p>
+	 * precondition: x is not the maximal node of the tree
+	 * postcondition: none
+	 */
+	private IWAVLNode successor(IWAVLNode x) {//works like algorithm shown in class
+		if (x.getRight() != EXT) {
+			return minNode(x.getRight());
+		}
+		IWAVLNode y = x.getParent();
+		while (y != EXT && x == y.getRight()) {
+			x = y;
+			y = x.getParent();
+		}
+		return y;
+	}
+
+	/**
+	 * private IWAVLNode maxNode(IWAVLNode)
+	 * <p>
+	 * Returns the node with the biggest key of given node's subtree
 	 */
 	private IWAVLNode maxNode(IWAVLNode node) {// same as minNode(), only other direction
 		while (node.getRight() != EXT) // keep going right, stop before external leaf
@@ -773,8 +2121,9 @@ public class WAVLTree {
 	 * another file.
 	 * This class can and must be modified.
 	 * (It must implement IWAVLNode)
+	 * It is static, since nodes don't depend on the tree holding them.
 	 */
-	public class WAVLNode implements IWAVLNode {
+	public static class WAVLNode implements IWAVLNode {
 
 		private int key;
 		private String value;
@@ -783,6 +2132,7 @@ public class WAVLTree {
 		private IWAVLNode parent;
 		private int rank;
 		private int size;
+		private long aggregate; // kept only while the tree holding the node has an augmentation
 
 		public WAVLNode() {
 			this.key = -1;
@@ -868,56 +2218,270 @@ public class WAVLTree {
 		public int[] getType() {//returns array with the rank differential between node and his sons
 			return new int[]{this.getRank() - this.getLeft().getRank(), this.getRank() - this.getRight().getRank()};
 		}
+
+		public long getAggregate() {
+			return this.aggregate;
+		}
+
+		void reset(int key, String value) {//makes a deleted node a new leaf with the given item
+			this.key = key;
+			this.value = value;
+			this.rank = 0;
+			this.size = 1;
+			this.aggregate = 0;
+			this.left = null;
+			this.right = null;
+			this.parent = null;
+		}
+
+		public void setAggregate(long aggregate) {
+			this.aggregate = aggregate;
+		}
 	}
 
-	private class StringStack {
-		public String[] arr;
-		private int end = 0;
+	/**
+	 * static class ArenaNode
+	 * <p>
+	 * A WAVLNode whose info lives in a ValueArena, under handle (-1 for null info).
+	 * info is decoded on each getValue(). once detached from the arena, the node holds its info as a plain String
+	 */
+	static final class ArenaNode extends WAVLNode {
+		private final ValueArena arena;
+		private int handle;
+
+		ArenaNode(ValueArena arena, int key, String value) {
+			super(key, null);
+			this.arena = arena;
+			this.handle = arena.add(value);
+		}
 
-		public StringStack(int n) {
-			this.arr = new String[n];
+		public String getValue() {
+			return this.handle < 0 ? super.getValue() : this.arena.get(this.handle);
 		}
 
-		public void push(String val) {
-			this.arr[end] = val;
-			end++;
+		void reset(int key, String value) {
+			this.release();
+			super.reset(key, null);
+			this.handle = this.arena.add(value);
 		}
 
-		public int getEnd() {
-			return this.end;
+		void release() {//frees the arena's copy of the info
+			this.arena.free(this.handle);
+			this.handle = -1;
 		}
 
-		public String[] getArray() {
-			return this.arr;
+		void detachValue() {//keeps the info as a String, and frees the arena's copy
+			String value = this.getValue();
+			this.release();
+			super.reset(this.getKey(), value);
 		}
 	}
 
-	private class IntStack {
-		public int[] arr;
-		private int end = 0;
-		private int start = 0;
+	/**
+	 * public interface Augmentation
+	 * <p>
+	 * A monoid over the tree's items, kept per subtree like the subtree size is.
+	 * combine() must be associative with identity() as its identity, but need not be commutative:
+	 * aggregates are always combined in key order.
+	 * lift() is called again whenever a node's aggregate is recomputed, so it should be cheap
+	 */
+	public interface Augmentation {
+		long identity(); // aggregate of no items
+
+		long lift(int key, String value); // aggregate of a single item
+
+		long combine(long left, long right); // aggregate of left's items followed by right's items
+
+		/**
+		 * static Augmentation sum()
+		 * <p>
+		 * sum of the items' info, read as decimal longs (null info counts as 0)
+		 */
+		static Augmentation sum() {
+			return new Augmentation() {
+				public long identity() {
+					return 0;
+				}
+
+				public long lift(int key, String value) {
+					return value == null ? 0 : Long.parseLong(value);
+				}
 
-		public IntStack() {
-			this.arr = new int[1000];
+				public long combine(long left, long right) {
+					return left + right;
+				}
+			};
 		}
 
-		public IntStack(int n) {
-			this.arr = new int[n];
+		/**
+		 * static Augmentation min()
+		 * <p>
+		 * minimum of the items' info, read as decimal longs (null info, and no items, give Long.MAX_VALUE)
+		 */
+		static Augmentation min() {
+			return new Augmentation() {
+				public long identity() {
+					return Long.MAX_VALUE;
+				}
+
+				public long lift(int key, String value) {
+					return value == null ? Long.MAX_VALUE : Long.parseLong(value);
+				}
+
+				public long combine(long left, long right) {
+					return Math.min(left, right);
+				}
+			};
 		}
 
-		public void push(int val) {
-			this.arr[end] = val;
-			end++;
+		/**
+		 * static Augmentation max()
+		 * <p>
+		 * maximum of the items' info, read as decimal longs (null info, and no items, give Long.MIN_VALUE)
+		 */
+		static Augmentation max() {
+			return new Augmentation() {
+				public long identity() {
+					return Long.MIN_VALUE;
+				}
+
+				public long lift(int key, String value) {
+					return value == null ? Long.MIN_VALUE : Long.parseLong(value);
+				}
+
+				public long combine(long left, long right) {
+					return Math.max(left, right);
+				}
+			};
 		}
+	}
 
-		public int getEnd() {
-			return this.end;
+	/**
+	 * public class Cursor
+	 * <p>
+	 * A lazy iterator over a key range of the tree, returned by cursor().
+	 * it holds only the next node to return, and must not be used after the tree is modified
+	 */
+	public class Cursor implements Iterator<IWAVLNode> {
+		private final long lo; // keys are kept as longs, so cursor() can cover all ints
+		private final long hi;
+		private final boolean descending;
+		private IWAVLNode next;
+
+		private Cursor(long lo, long hi, boolean descending) {
+			this.lo = lo;
+			this.hi = hi;
+			this.descending = descending;
+			this.next = descending ? lowerNode(hi) : ceilingNode(lo);
+			if (this.next != EXT && !this.inRange(this.next))
+				this.next = EXT;
+		}
+
+		private boolean inRange(IWAVLNode node) {
+			return node.getKey() >= this.lo && node.getKey() < this.hi;
+		}
+
+		public boolean hasNext() {
+			return this.next != EXT;
+		}
+
+		public IWAVLNode next() {
+			IWAVLNode node = this.next;
+			if (node == EXT)
+				throw new NoSuchElementException();
+			this.next = this.descending ? predecessor(node) : successor(node);
+			if (this.next != EXT && !this.inRange(this.next)) // left the range, we're done
+				this.next = EXT;
+			return node;
 		}
 
-		public int[] getArray() {
-			return this.arr;
+		/**
+		 * public int nextChunk(int[] keys, String[] values, int offset, int length)
+		 * <p>
+		 * moves up to length items into keys[offset..] and values[offset..], in cursor order,
+		 * so a big tree can be exported in fixed-size chunks through reused buffers.
+		 * either array may be null, to skip it.
+		 * returns the number of items moved, 0 once the cursor is done
+		 */
+		public int nextChunk(int[] keys, String[] values, int offset, int length) {
+			int count = 0;
+			while (count < length && this.hasNext()) {
+				IWAVLNode node = this.next();
+				if (keys != null)
+					keys[offset + count] = node.getKey();
+				if (values != null)
+					values[offset + count] = node.getValue();
+				count++;
+			}
+			return count;
+		}
+
+		/**
+		 * public int nextChunk(IntBuffer keys)
+		 * <p>
+		 * puts the next keys into keys, in cursor order, until it is full or the cursor is done.
+		 * returns the number of keys put
+		 */
+		public int nextChunk(IntBuffer keys) {
+			int count = 0;
+			while (keys.hasRemaining() && this.hasNext()) {
+				keys.put(this.next().getKey());
+				count++;
+			}
+			return count;
 		}
 	}
 
+	/**
+	 * private class NodeSpliterator
+	 * <p>
+	 * A spliterator over the nodes of ranks [from, to) (0-based), returned by spliterator().
+	 * splitting halves the rank range, and each half finds its first node with selectNode() in O(log n)
+	 */
+	private class NodeSpliterator implements Spliterator<IWAVLNode> {
+		private int from;
+		private final int to;
+		private IWAVLNode current = null; // node of rank from, found lazily
+
+		private NodeSpliterator(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		public boolean tryAdvance(Consumer<? super IWAVLNode> action) {
+			if (this.from >= this.to)
+				return false;
+			if (this.current == null)
+				this.current = selectNode(root, this.from + 1);
+			IWAVLNode node = this.current;
+			this.from++;
+			this.current = this.from < this.to ? successor(node) : null;
+			action.accept(node);
+			return true;
+		}
+
+		public void forEachRemaining(Consumer<? super IWAVLNode> action) {
+			while (this.tryAdvance(action))
+				;
+		}
 
+		public Spliterator<IWAVLNode> trySplit() {
+			int mid = (this.from + this.to) >>> 1;
+			if (mid <= this.from) // too small to split
+				return null;
+			NodeSpliterator prefix = new NodeSpliterator(this.from, mid);
+			prefix.current = this.current;
+			this.from = mid;
+			this.current = null;
+			return prefix;
+		}
+
+		public long estimateSize() {
+			return this.to - this.from;
+		}
+
+		public int characteristics() {
+			return ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL;
+		}
+	}
 }
@@ -0,0 +1,242 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+
+/**
+ * WAVLTreeFile
+ * <p>
+ * The compact binary format of WAVLTree.writeTo() and WAVLTree.readFrom():
+ * <p>
+ * - a header: the int "WAVL", a version byte, and the number of items as a varint.
+ * - the keys, ascending: the first as a zigzag varint, each of the others as a varint of its distance from the one before.
+ * - the info of each key, in the same order: a varint of the UTF-8 length plus one (0 for null info), then the bytes.
+ * - the CRC32 of everything above, as an int.
+ * <p>
+ * varints hold 7 bits per byte, low bits first, so close keys take a byte or two each.
+ * the file is read and written through a FileChannel with one reusable buffer,
+ * and reading rebuilds the tree with the O(n) bulk constructor, since the keys come sorted.
+ */
+
+final class WAVLTreeFile {
+
+	private static final int MAGIC = 0x5741564c; // "WAVL"
+	private static final int VERSION = 1;
+	private static final int BUFFER = 1 << 16;
+
+	private WAVLTreeFile() {
+	}
+
+	/**
+	 * static void write(WAVLTree tree, Path path)
+	 * <p>
+	 * writes all of tree's items to path, replacing whatever was there
+	 */
+	static void write(WAVLTree tree, Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			Output out = new Output(channel);
+			out.putInt(MAGIC);
+			out.put(VERSION);
+			out.putVarint(tree.size());
+			long previous = 0;
+			boolean first = true;
+			for (Iterator<WAVLTree.IWAVLNode> it = tree.cursor(); it.hasNext(); ) { // keys section
+				long key = it.next().getKey();
+				out.putVarint(first ? (key << 1) ^ (key >> 63) : key - previous); // zigzag, so small negative keys stay short
+				previous = key;
+				first = false;
+			}
+			for (Iterator<WAVLTree.IWAVLNode> it = tree.cursor(); it.hasNext(); ) { // info section
+				String value = it.next().getValue();
+				if (value == null) {
+					out.putVarint(0);
+					continue;
+				}
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				out.putVarint(bytes.length + 1L);
+				out.put(bytes);
+			}
+			out.flush();
+			ByteBuffer trailer = ByteBuffer.allocate(4).putInt(0, (int) out.crc.getValue());
+			while (trailer.hasRemaining())
+				channel.write(trailer);
+		}
+	}
+
+	/**
+	 * static WAVLTree read(Path path)
+	 * <p>
+	 * reads the tree written to path by write(), and checks it against the stored checksum.
+	 * throws IOException if path doesn't hold a valid file, or the checksum doesn't match
+	 */
+	static WAVLTree read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long dataLength = channel.size() - 4;
+			if (dataLength < 6)
+				throw new IOException("not a WAVLTree file: " + path);
+			Input in = new Input(channel, dataLength);
+			if (in.getInt() != MAGIC || in.get() != VERSION)
+				throw new IOException("not a WAVLTree file: " + path);
+			long count = in.getVarint();
+			if (count < 0 || count > dataLength) // every item takes at least a byte for its key
+				throw new IOException("corrupt WAVLTree file: " + path);
+			int[] keys = new int[(int) count];
+			String[] values = new String[keys.length];
+			long key = 0;
+			for (int j = 0; j < keys.length; j++) {
+				long varint = in.getVarint();
+				key = j == 0 ? (varint >>> 1) ^ -(varint & 1) : key + varint;
+				keys[j] = (int) key;
+			}
+			for (int j = 0; j < values.length; j++) {
+				long length = in.getVarint() - 1;
+				if (length > Integer.MAX_VALUE)
+					throw new IOException("corrupt WAVLTree file: " + path);
+				values[j] = length < 0 ? null : in.getString((int) length);
+			}
+			if (in.remaining() != 0)
+				throw new IOException("corrupt WAVLTree file: " + path);
+			ByteBuffer trailer = ByteBuffer.allocate(4);
+			while (trailer.hasRemaining())
+				if (channel.read(trailer, dataLength + trailer.position()) < 0)
+					throw new IOException("corrupt WAVLTree file: " + path);
+			if (trailer.getInt(0) != (int) in.crc.getValue())
+				throw new IOException("checksum mismatch in WAVLTree file: " + path);
+			return new WAVLTree(keys, values); // keys are sorted, so this takes O(n)
+		}
+	}
+
+	/**
+	 * private static class Output
+	 * <p>
+	 * buffers writes to a channel, and keeps the CRC32 of everything written
+	 */
+	private static final class Output {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+		private final CRC32 crc = new CRC32();
+
+		private Output(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		private void put(int b) throws IOException {
+			if (!this.buffer.hasRemaining())
+				this.flush();
+			this.buffer.put((byte) b);
+		}
+
+		private void putInt(int value) throws IOException {
+			for (int shift = 24; shift >= 0; shift -= 8)
+				this.put(value >>> shift);
+		}
+
+		private void putVarint(long value) throws IOException {//value is treated as unsigned
+			while ((value & ~0x7fL) != 0) {
+				this.put((int) (value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			this.put((int) value);
+		}
+
+		private void put(byte[] bytes) throws IOException {
+			for (int offset = 0; offset < bytes.length; ) {
+				if (!this.buffer.hasRemaining())
+					this.flush();
+				int length = Math.min(bytes.length - offset, this.buffer.remaining());
+				this.buffer.put(bytes, offset, length);
+				offset += length;
+			}
+		}
+
+		private void flush() throws IOException {
+			this.buffer.flip();
+			this.crc.update(this.buffer.array(), 0, this.buffer.limit());
+			while (this.buffer.hasRemaining())
+				this.channel.write(this.buffer);
+			this.buffer.clear();
+		}
+	}
+
+	/**
+	 * private static class Input
+	 * <p>
+	 * buffers reads of the first dataLength bytes of a channel, and keeps their CRC32
+	 */
+	private static final class Input {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+		private final CRC32 crc = new CRC32();
+		private long unread; // bytes of data not yet in the buffer
+
+		private Input(FileChannel channel, long dataLength) {
+			this.channel = channel;
+			this.unread = dataLength;
+			this.buffer.limit(0);
+		}
+
+		private long remaining() {
+			return this.unread + this.buffer.remaining();
+		}
+
+		private void fill(int needed) throws IOException {//makes sure the buffer holds needed bytes
+			if (this.buffer.remaining() >= needed)
+				return;
+			if (this.remaining() < needed)
+				throw new IOException("unexpected end of WAVLTree file");
+			this.buffer.compact();
+			int start = this.buffer.position();
+			int want = (int) Math.min(this.buffer.remaining(), this.unread);
+			this.buffer.limit(start + want);
+			while (this.buffer.hasRemaining())
+				if (this.channel.read(this.buffer) < 0)
+					throw new IOException("unexpected end of WAVLTree file");
+			this.crc.update(this.buffer.array(), start, want);
+			this.unread -= want;
+			this.buffer.flip();
+		}
+
+		private int get() throws IOException {
+			this.fill(1);
+			return this.buffer.get() & 0xff;
+		}
+
+		private int getInt() throws IOException {
+			this.fill(4);
+			return this.buffer.getInt();
+		}
+
+		private long getVarint() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = this.get();
+				value |= (long) (b & 0x7f) << shift;
+				if ((b & 0x80) == 0)
+					return value;
+			}
+			throw new IOException("corrupt varint in WAVLTree file");
+		}
+
+		private String getString(int length) throws IOException {
+			if (length > BUFFER) { // too long for the buffer, read it into its own array
+				byte[] bytes = new byte[length];
+				for (int offset = 0; offset < length; ) {
+					this.fill(1);
+					int chunk = Math.min(length - offset, this.buffer.remaining());
+					this.buffer.get(bytes, offset, chunk);
+					offset += chunk;
+				}
+				return new String(bytes, StandardCharsets.UTF_8);
+			}
+			this.fill(length);
+			String value = new String(this.buffer.array(), this.buffer.position(), length, StandardCharsets.UTF_8);
+			this.buffer.position(this.buffer.position() + length);
+			return value;
+		}
+	}
+}
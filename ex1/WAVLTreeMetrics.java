@@ -0,0 +1,316 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * WAVLTreeMetrics
+ * <p>
+ * Operation counters, rebalancing counters and latency histograms of one WAVLTree,
+ * created by WAVLTree.enableMetrics(). a tree without metrics pays a single null check per operation
+ * and per rebalancing step, so metrics can stay compiled in and be turned on where needed.
+ * <p>
+ * counters are LongAdders, so a ConcurrentWAVLTree's readers can update them in parallel.
+ * every operation is also emitted as a WAVLTreeOperation JFR event, when a recording enables it.
+ * the counters can be published over JMX with register().
+ */
+
+public class WAVLTreeMetrics implements WAVLTreeMetricsMXBean {
+
+	private static final int BUCKETS = 64; // one per power of two of nanoseconds
+
+	private final WAVLTree tree;
+	private ObjectName registeredAs = null;
+
+	final LongAdder inserts = new LongAdder();
+	final LongAdder deletes = new LongAdder();
+	final LongAdder searches = new LongAdder();
+	final LongAdder rebalances = new LongAdder();
+	final LongAdder rotations = new LongAdder();
+	final LongAdder promotions = new LongAdder();
+	final LongAdder demotions = new LongAdder();
+	private final LongAdder searchDepths = new LongAdder();
+	private final LongAccumulator maxSearchDepth = new LongAccumulator(Math::max, 0);
+	private final AtomicLongArray insertLatency = new AtomicLongArray(BUCKETS);
+	private final AtomicLongArray deleteLatency = new AtomicLongArray(BUCKETS);
+	private final AtomicLongArray searchLatency = new AtomicLongArray(BUCKETS);
+
+	WAVLTreeMetrics(WAVLTree tree) {
+		this.tree = tree;
+	}
+
+	/**
+	 * void recordInsert(int k, int rebalances, long start)
+	 * <p>
+	 * records an insert() of k that started at System.nanoTime() == start, and returned rebalances
+	 */
+	void recordInsert(int k, int rebalances, long start) {
+		long nanos = System.nanoTime() - start;
+		this.inserts.increment();
+		if (rebalances > 0)
+			this.rebalances.add(rebalances);
+		record(this.insertLatency, nanos);
+		emit("insert", k, rebalances, -1, nanos);
+	}
+
+	/**
+	 * void recordDelete(int k, int rebalances, long start)
+	 * <p>
+	 * same as recordInsert(), for delete()
+	 */
+	void recordDelete(int k, int rebalances, long start) {
+		long nanos = System.nanoTime() - start;
+		this.deletes.increment();
+		if (rebalances > 0)
+			this.rebalances.add(rebalances);
+		record(this.deleteLatency, nanos);
+		emit("delete", k, rebalances, -1, nanos);
+	}
+
+	/**
+	 * void recordSearch(int k, int depth, long start)
+	 * <p>
+	 * records a search() of k that started at System.nanoTime() == start, and ended depth edges below the root
+	 */
+	void recordSearch(int k, int depth, long start) {
+		recordSearchNanos(k, depth, System.nanoTime() - start);
+	}
+
+	/**
+	 * void recordSearches(int[] keys, int[] depths, long start)
+	 * <p>
+	 * records a searchAll() of keys that started at System.nanoTime() == start, as one search per key,
+	 * the search of keys[j] ending depths[j] edges below the root.
+	 * each search is given an equal share of the batch's latency
+	 */
+	void recordSearches(int[] keys, int[] depths, long start) {
+		long nanos = (System.nanoTime() - start) / Math.max(1, keys.length);
+		for (int j = 0; j < keys.length; j++)
+			recordSearchNanos(keys[j], depths[j], nanos);
+	}
+
+	private void recordSearchNanos(int k, int depth, long nanos) {
+		this.searches.increment();
+		this.searchDepths.add(depth);
+		this.maxSearchDepth.accumulate(depth);
+		record(this.searchLatency, nanos);
+		emit("search", k, 0, depth, nanos);
+	}
+
+	private static void record(AtomicLongArray histogram, long nanos) {
+		histogram.getAndIncrement(bucket(nanos));
+	}
+
+	private static int bucket(long nanos) {//b such that 2^(b-1) <= nanos < 2^b, 0 for 0
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+	}
+
+	private static void emit(String operation, int k, int rebalances, int depth, long nanos) {
+		OperationEvent event = new OperationEvent();
+		if (!event.shouldCommit()) // no recording wants it, skip filling the fields
+			return;
+		event.operation = operation;
+		event.key = k;
+		event.rebalances = rebalances;
+		event.depth = depth;
+		event.latency = nanos;
+		event.commit();
+	}
+
+	/**
+	 * private static long percentile(AtomicLongArray histogram, double p)
+	 * <p>
+	 * returns the upper bound of the bucket holding the p'th fraction of the recorded latencies,
+	 * or 0 if nothing was recorded
+	 * <p>
+	 * precondition: 0 < p <= 1
+	 */
+	private static long percentile(AtomicLongArray histogram, double p) {
+		long[] counts = snapshot(histogram);
+		long total = 0;
+		for (long count : counts)
+			total += count;
+		if (total == 0)
+			return 0;
+		long target = (long) Math.ceil(total * p);
+		long seen = 0;
+		for (int b = 0; b < counts.length; b++) {
+			seen += counts[b];
+			if (seen >= target)
+				return b == BUCKETS - 1 ? Long.MAX_VALUE : 1L << b;
+		}
+		return Long.MAX_VALUE;
+	}
+
+	private static long[] snapshot(AtomicLongArray histogram) {
+		long[] counts = new long[histogram.length()];
+		for (int b = 0; b < counts.length; b++)
+			counts[b] = histogram.get(b);
+		return counts;
+	}
+
+	/**
+	 * public ObjectName register(String name)
+	 * <p>
+	 * publishes these metrics on the platform MBean server, as WAVLTree:type=WAVLTreeMetrics,name=name,
+	 * and returns the name they were registered under
+	 */
+	public synchronized ObjectName register(String name) throws JMException {
+		if (this.registeredAs != null)
+			return this.registeredAs;
+		ObjectName objectName = new ObjectName("WAVLTree:type=WAVLTreeMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		this.registeredAs = objectName;
+		return objectName;
+	}
+
+	/**
+	 * public void unregister()
+	 * <p>
+	 * removes these metrics from the platform MBean server, if register() published them
+	 */
+	public synchronized void unregister() throws JMException {
+		if (this.registeredAs == null)
+			return;
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (server.isRegistered(this.registeredAs))
+			server.unregisterMBean(this.registeredAs);
+		this.registeredAs = null;
+	}
+
+	public long getInsertCount() {
+		return this.inserts.sum();
+	}
+
+	public long getDeleteCount() {
+		return this.deletes.sum();
+	}
+
+	public long getSearchCount() {
+		return this.searches.sum();
+	}
+
+	public long getRebalanceCount() {
+		return this.rebalances.sum();
+	}
+
+	public long getRotationCount() {
+		return this.rotations.sum();
+	}
+
+	public long getPromotionCount() {
+		return this.promotions.sum();
+	}
+
+	public long getDemotionCount() {
+		return this.demotions.sum();
+	}
+
+	public double getAverageSearchDepth() {
+		long count = this.searches.sum();
+		return count == 0 ? 0 : (double) this.searchDepths.sum() / count;
+	}
+
+	public int getMaxSearchDepth() {
+		return (int) this.maxSearchDepth.get();
+	}
+
+	public int getSize() {
+		return this.tree.size();
+	}
+
+	public int getRootRank() {
+		WAVLTree.IWAVLNode root = this.tree.getRoot();
+		return root == null ? -1 : root.getRank();
+	}
+
+	public long getInsertLatencyP50() {
+		return percentile(this.insertLatency, 0.5);
+	}
+
+	public long getInsertLatencyP99() {
+		return percentile(this.insertLatency, 0.99);
+	}
+
+	public long getDeleteLatencyP50() {
+		return percentile(this.deleteLatency, 0.5);
+	}
+
+	public long getDeleteLatencyP99() {
+		return percentile(this.deleteLatency, 0.99);
+	}
+
+	public long getSearchLatencyP50() {
+		return percentile(this.searchLatency, 0.5);
+	}
+
+	public long getSearchLatencyP99() {
+		return percentile(this.searchLatency, 0.99);
+	}
+
+	public long[] getInsertLatencyHistogram() {
+		return snapshot(this.insertLatency);
+	}
+
+	public long[] getDeleteLatencyHistogram() {
+		return snapshot(this.deleteLatency);
+	}
+
+	public long[] getSearchLatencyHistogram() {
+		return snapshot(this.searchLatency);
+	}
+
+	public void reset() {
+		this.inserts.reset();
+		this.deletes.reset();
+		this.searches.reset();
+		this.rebalances.reset();
+		this.rotations.reset();
+		this.promotions.reset();
+		this.demotions.reset();
+		this.searchDepths.reset();
+		this.maxSearchDepth.reset();
+		for (int b = 0; b < BUCKETS; b++) {
+			this.insertLatency.set(b, 0);
+			this.deleteLatency.set(b, 0);
+			this.searchLatency.set(b, 0);
+		}
+	}
+
+	/**
+	 * static class OperationEvent
+	 * <p>
+	 * The JFR event emitted for every insert(), delete() and search() of a tree with metrics.
+	 * disabled by default, enable WAVLTreeOperation in a recording's settings to get it
+	 */
+	@Name("WAVLTreeOperation")
+	@Label("WAVL Tree Operation")
+	@Category("WAVLTree")
+	@Enabled(false)
+	static class OperationEvent extends Event {
+		@Label("Operation")
+		String operation;
+
+		@Label("Key")
+		int key;
+
+		@Label("Rebalancing Operations")
+		int rebalances;
+
+		@Label("Search Depth")
+		int depth; // -1 for insert and delete
+
+		@Label("Latency")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+	}
+}
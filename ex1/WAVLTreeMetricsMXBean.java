@@ -0,0 +1,50 @@
+/**
+ * WAVLTreeMetricsMXBean
+ * <p>
+ * The management interface of WAVLTreeMetrics, as published over JMX by WAVLTreeMetrics.register().
+ * latencies are in nanoseconds, rounded up to a power of two.
+ */
+
+public interface WAVLTreeMetricsMXBean {
+	long getInsertCount(); // insert() calls and keys of insertAll(), including ones that found the key already there
+
+	long getDeleteCount(); // delete() calls, keys of deleteAll() and polls, including ones that didn't find the key
+
+	long getSearchCount(); // search() calls and keys of searchAll()
+
+	long getRebalanceCount(); // sum of the rebalancing operations of the inserts and deletes counted above
+
+	long getRotationCount(); // single rotations, a double rotation counts as two. includes join(), split() and set operations
+
+	long getPromotionCount(); // promotions done by inserts without rotating
+
+	long getDemotionCount(); // demotions done by deletes without rotating
+
+	double getAverageSearchDepth(); // edges from the root to the node search() ended at
+
+	int getMaxSearchDepth();
+
+	int getSize(); // number of nodes in the tree
+
+	int getRootRank(); // bounds the height h of the tree: h <= rank <= 2h
+
+	long getInsertLatencyP50();
+
+	long getInsertLatencyP99();
+
+	long getDeleteLatencyP50();
+
+	long getDeleteLatencyP99();
+
+	long getSearchLatencyP50();
+
+	long getSearchLatencyP99();
+
+	long[] getInsertLatencyHistogram(); // entry b counts operations that took less than 2^b ns, but not less than 2^(b-1)
+
+	long[] getDeleteLatencyHistogram();
+
+	long[] getSearchLatencyHistogram();
+
+	void reset(); // zeroes all counters and histograms
+}
@@ -0,0 +1,130 @@
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * DHeapBenchmark
+ * <p>
+ * Rough comparisons between DHeap, IntDHeap and java.util.PriorityQueue.
+ * Run with: java DHeapBenchmark [n] [d]
+ * <p>
+ * These are plain System.nanoTime() loops with a warm-up round,
+ * good enough to compare layouts, not to publish numbers.
+ * DHeap and IntDHeap must report the same comparison counts, or the benchmark fails.
+ */
+
+public class DHeapBenchmark {
+
+	private static final int DEFAULT_N = 1_000_000;
+	private static final int DEFAULT_D = 4;
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_N;
+		int d = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_D;
+		int[] keys = randomKeys(n, 1);
+		System.out.println("n = " + n + ", d = " + d);
+		heapSort(keys, d);
+		decreaseKeys(keys, d);
+	}
+
+	/**
+	 * public static void heapSort(int[] keys, int d)
+	 * <p>
+	 * sorts keys with DHeap.DHeapSort(), IntDHeap.DHeapSort() and a PriorityQueue (add all, then poll all)
+	 */
+	public static void heapSort(int[] keys, int d) {
+		for (int round = 0; round < 2; round++) { // first round is warm-up
+			int[] objects = keys.clone();
+			long start = System.nanoTime();
+			int objectComparisons = DHeap.DHeapSort(objects, d);
+			long objectTime = System.nanoTime() - start;
+			int[] primitives = keys.clone();
+			start = System.nanoTime();
+			int primitiveComparisons = IntDHeap.DHeapSort(primitives, d);
+			long primitiveTime = System.nanoTime() - start;
+			int[] queued = new int[keys.length];
+			start = System.nanoTime();
+			PriorityQueue<Integer> queue = new PriorityQueue<>(keys.length);
+			for (int key : keys)
+				queue.add(key);
+			for (int i = 0; i < queued.length; i++)
+				queued[i] = queue.poll();
+			long queueTime = System.nanoTime() - start;
+			if (objectComparisons != primitiveComparisons)
+				throw new IllegalStateException("comparison counts differ");
+			for (int i = 0; i < keys.length; i++)
+				if (objects[i] != primitives[i] || objects[i] != queued[i])
+					throw new IllegalStateException("sorted arrays differ");
+			if (round == 1) {
+				report("DHeap sort ns/key", (double) objectTime / keys.length);
+				report("IntDHeap sort ns/key", (double) primitiveTime / keys.length);
+				report("PriorityQueue sort ns/key", (double) queueTime / keys.length);
+				report("comparisons/key", (double) primitiveComparisons / keys.length);
+			}
+		}
+	}
+
+	/**
+	 * public static void decreaseKeys(int[] keys, int d)
+	 * <p>
+	 * inserts keys, decreases the keys of random items keys.length times (like Dijkstra relaxing edges),
+	 * then deletes half of them by handle and the rest with Delete_Min(), with DHeap and with IntDHeap.
+	 * PriorityQueue is left out, having no decrease-key and only an O(n) remove(Object)
+	 */
+	public static void decreaseKeys(int[] keys, int d) {
+		int n = keys.length;
+		Random random = new Random(3);
+		int[] targets = new int[n];
+		int[] deltas = new int[n];
+		for (int i = 0; i < n; i++) {
+			targets[i] = random.nextInt(n);
+			deltas[i] = random.nextInt(1 << 10);
+		}
+		for (int round = 0; round < 2; round++) { // first round is warm-up
+			long start = System.nanoTime();
+			DHeap objects = new DHeap(d, n);
+			DHeap_Item[] items = new DHeap_Item[n];
+			long objectComparisons = 0;
+			for (int i = 0; i < n; i++) {
+				items[i] = new DHeap_Item(String.valueOf(i), keys[i]);
+				objectComparisons += objects.Insert(items[i]);
+			}
+			for (int i = 0; i < n; i++)
+				objectComparisons += objects.Decrease_Key(items[targets[i]], deltas[i]);
+			for (int i = 0; i < n; i += 2)
+				objectComparisons += objects.Delete(items[i]);
+			while (objects.getSize() > 0)
+				objectComparisons += objects.Delete_Min();
+			long objectTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			IntDHeap primitives = new IntDHeap(d, n);
+			long primitiveComparisons = 0;
+			for (int i = 0; i < n; i++)
+				primitiveComparisons += primitives.Insert(i, keys[i]);
+			for (int i = 0; i < n; i++)
+				primitiveComparisons += primitives.Decrease_Key(targets[i], deltas[i]);
+			for (int i = 0; i < n; i += 2)
+				primitiveComparisons += primitives.Delete(i);
+			while (primitives.getSize() > 0)
+				primitiveComparisons += primitives.Delete_Min();
+			long primitiveTime = System.nanoTime() - start;
+			if (objectComparisons != primitiveComparisons)
+				throw new IllegalStateException("comparison counts differ");
+			if (round == 1) {
+				report("DHeap decrease-key mix ns/key", (double) objectTime / n);
+				report("IntDHeap decrease-key mix ns/key", (double) primitiveTime / n);
+			}
+		}
+	}
+
+	static int[] randomKeys(int n, long seed) {//n keys in [0, 2^30), so decreasing them can't overflow
+		Random random = new Random(seed);
+		int[] keys = new int[n];
+		for (int i = 0; i < n; i++)
+			keys[i] = random.nextInt(1 << 30);
+		return keys;
+	}
+
+	static void report(String name, double value) {
+		System.out.printf("%-40s %12.2f%n", name, value);
+	}
+}
@@ -0,0 +1,318 @@
+import java.util.Arrays;
+
+/**
+ * IntDHeap
+ * <p>
+ * A D-ary heap of primitive int keys, the same heap as DHeap without DHeap_Item objects.
+ * keys are kept in heap order in an int[], with a parallel int[] of handles,
+ * and an int[] mapping each handle to its position (-1 if the handle isn't in the heap).
+ * a handle is any int in [0, max_size), chosen by the caller when inserting (a vertex number, an array index),
+ * and is what Decrease_Key() and Delete() take instead of an item.
+ * <p>
+ * every method compares keys in the same order as DHeap's, and returns the same number of comparisons.
+ * items are moved down (or up) into a hole instead of swapped, which changes no comparison.
+ */
+
+public class IntDHeap {
+
+	private int size, max_size, d;
+	private int[] keys; // keys[i] is the key at position i
+	private int[] handles; // handles[i] is the handle of the key at position i
+	private int[] pos; // pos[h] is the position of handle h, -1 if h isn't in the heap
+
+	// Constructor
+	// m_d >= 2, m_size > 0
+	IntDHeap(int m_d, int m_size) {
+		this.max_size = m_size;
+		this.d = m_d;
+		this.keys = new int[this.max_size];
+		this.handles = new int[this.max_size];
+		this.pos = new int[this.max_size];
+		Arrays.fill(this.pos, -1);
+		this.size = 0;
+	}
+
+	private int parent(int i) {//same as DHeap.parent(i, d)
+		return (i - 1) / this.d;
+	}
+
+	/**
+	 * Sort the input array using heap-sort, like DHeap.DHeapSort(),
+	 * and with the same number of comparisons.
+	 * <p>
+	 * Returns the number of comparisons performed.
+	 * <p>
+	 * postcondition: array1 is sorted
+	 */
+	public static int DHeapSort(int[] array1, int d) {
+		int comparisons = 0;
+		IntDHeap dHeap = new IntDHeap(d, Math.max(1, array1.length));
+		for (int i = 0; i < array1.length; i++) // handle i for the i'th key
+			comparisons += dHeap.Insert(i, array1[i]);
+		for (int i = 0; i < array1.length; i++) {
+			array1[i] = dHeap.Get_Min_Key();
+			comparisons += dHeap.Delete_Min();
+		}
+		return comparisons;
+	}
+
+	/**
+	 * public int getSize()
+	 * <p>
+	 * Returns the number of elements in the heap.
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * public boolean contains(int handle)
+	 * <p>
+	 * Returns true if and only if handle is in the heap.
+	 * <p>
+	 * precondition: 0 <= handle < max_size
+	 */
+	public boolean contains(int handle) {
+		return this.pos[handle] >= 0;
+	}
+
+	/**
+	 * public int getKey(int handle)
+	 * <p>
+	 * Returns the key of handle.
+	 * <p>
+	 * precondition: contains(handle)
+	 */
+	public int getKey(int handle) {
+		return this.keys[this.pos[handle]];
+	}
+
+	/**
+	 * public int arrayToHeap(int[] array1)
+	 * <p>
+	 * Builds a new heap from the given keys, giving array1[j] the handle j.
+	 * Previous data of the heap is erased. array1 isn't kept.
+	 * <p>
+	 * precondition: array1.length <= max_size
+	 * postcondition: isHeap()
+	 * size = array1.length
+	 * <p>
+	 * Returns number of comparisons along the function run, same as DHeap.arrayToHeap().
+	 */
+	public int arrayToHeap(int[] array1) {
+		Arrays.fill(this.pos, -1);
+		this.size = array1.length;
+		for (int i = 0; i < this.size; i++) {
+			this.keys[i] = array1[i];
+			this.handles[i] = i;
+			this.pos[i] = i;
+		}
+		int comparisons = 0;
+		for (int i = this.size / this.d + 1; i >= 0; i--) { // for all non-leaves in heap, from last to root
+			if (this.d * i + 1 < this.size)
+				comparisons += Heapify_Down(i);
+		}
+		return comparisons;
+	}
+
+	/**
+	 * public boolean isHeap()
+	 * <p>
+	 * The function returns true if and only if the D-ary tree rooted at keys[0]
+	 * satisfies the heap property or has size == 0.
+	 */
+	public boolean isHeap() {
+		for (int i = 1; i < this.size; i++) {
+			if (this.keys[i] < this.keys[parent(i)])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * public int Insert(int handle, int key)
+	 * <p>
+	 * Inserts key to the heap under handle.
+	 * Returns number of comparisons during the insertion.
+	 * <p>
+	 * precondition: 0 <= handle < max_size
+	 * !contains(handle)
+	 * isHeap()
+	 * size < max_size
+	 * postcondition: isHeap()
+	 */
+	public int Insert(int handle, int key) {
+		if (this.size >= this.max_size) // to be safe
+			return 0;
+		int last = this.size++;
+		this.keys[last] = key; // place key at end of array
+		this.handles[last] = handle;
+		this.pos[handle] = last;
+		return Heapify_Up(last);
+	}
+
+	/**
+	 * public int Delete_Min()
+	 * <p>
+	 * Deletes the minimum key in the heap.
+	 * Returns the number of comparisons made during the deletion.
+	 * <p>
+	 * precondition: size > 0
+	 * isHeap()
+	 * postcondition: isHeap()
+	 */
+	public int Delete_Min() {
+		if (this.size <= 0) // just to be safe
+			return 0;
+		int min = this.handles[0];
+		this.size--;
+		if (this.size == 0) { // deleted the only key
+			this.pos[min] = -1;
+			return 0;
+		}
+		this.move(this.size, 0); // replace root with last key
+		this.pos[min] = -1;
+		return Heapify_Down(0);
+	}
+
+	/**
+	 * public int Get_Min()
+	 * <p>
+	 * Returns the handle of the minimum key in the heap, or -1 if the heap is empty.
+	 */
+	public int Get_Min() {
+		if (this.size == 0) // to be safe
+			return -1;
+		return this.handles[0];
+	}
+
+	/**
+	 * public int Get_Min_Key()
+	 * <p>
+	 * Returns the minimum key in the heap.
+	 * <p>
+	 * precondition: size > 0
+	 */
+	public int Get_Min_Key() {
+		return this.keys[0];
+	}
+
+	/**
+	 * public int Decrease_Key(int handle, int delta)
+	 * <p>
+	 * Decreases the key of handle by delta.
+	 * Returns number of comparisons made as a result of the decrease.
+	 * <p>
+	 * precondition: contains(handle)
+	 * isHeap()
+	 * postcondition: isHeap()
+	 */
+	public int Decrease_Key(int handle, int delta) {
+		int at = this.pos[handle];
+		this.keys[at] -= delta;
+		return Heapify_Up(at);
+	}
+
+	/**
+	 * public int Delete(int handle)
+	 * <p>
+	 * Deletes handle and its key from the heap.
+	 * Returns number of comparisons during the deletion.
+	 * <p>
+	 * precondition: contains(handle)
+	 * isHeap()
+	 * postcondition: isHeap()
+	 */
+	public int Delete(int handle) {
+		int delPos = this.pos[handle];
+		this.size--;
+		if (this.size == 0) { // if deleted last item
+			this.pos[handle] = -1;
+			return 0;
+		}
+		if (delPos == this.size) { // deleted the last key, DHeap.Delete() still compares it with its parent
+			this.pos[handle] = -1;
+			return 1;
+		}
+		this.move(this.size, delPos); // put last key in the place of deleted one
+		this.pos[handle] = -1;
+		if (delPos != 0 && this.keys[delPos] < this.keys[parent(delPos)]) // same direction and count as DHeap.Delete()
+			return Heapify_Up(delPos) + 1;
+		else
+			return Heapify_Down(delPos) + 1;
+	}
+
+	private void move(int from, int to) {//puts the key at from, and its handle, in position to
+		int handle = this.handles[from];
+		this.keys[to] = this.keys[from];
+		this.handles[to] = handle;
+		this.pos[handle] = to;
+	}
+
+	/**
+	 * private int Heapify_Up(int at)
+	 * <p>
+	 * Fixes heap by moving the key at position at up while its parent is larger.
+	 * parents move down into the hole it leaves, and the key is written once where it stops.
+	 * <p>
+	 * Returns number of comparisons made, same as DHeap's Heapify_Up()
+	 * <p>
+	 * precondition: 0 <= at < size
+	 * postcondition: isHeap()
+	 */
+	private int Heapify_Up(int at) {
+		if (at == 0) // can't heapify-up from root
+			return 0;
+		int key = this.keys[at];
+		int handle = this.handles[at];
+		int comparisons = 0;
+		while (at > 0) {
+			int parent = parent(at);
+			comparisons++;
+			if (key >= this.keys[parent])
+				break;
+			this.move(parent, at); // parent is larger, move it down
+			at = parent;
+		}
+		this.keys[at] = key;
+		this.handles[at] = handle;
+		this.pos[handle] = at;
+		return comparisons;
+	}
+
+	/**
+	 * private int Heapify_Down(int at)
+	 * <p>
+	 * Fixes heap by moving the key at position at down while one of its children is smaller,
+	 * each time in place of the smallest child. children move up into the hole it leaves.
+	 * <p>
+	 * Returns number of comparisons made, same as DHeap's Heapify_Down()
+	 * <p>
+	 * precondition: 0 <= at < size
+	 */
+	private int Heapify_Down(int at) {
+		int key = this.keys[at];
+		int handle = this.handles[at];
+		int comparisons = 0;
+		while (true) {
+			int smallest = -1;
+			int smallestKey = key;
+			int end = Math.min(this.size, (at + 1) * this.d + 1);
+			for (int i = at * this.d + 1; i < end; i++) { // for each child
+				comparisons++;
+				if (this.keys[i] < smallestKey) {
+					smallest = i;
+					smallestKey = this.keys[i];
+				}
+			}
+			if (smallest == -1) // key is smaller than all its children
+				break;
+			this.move(smallest, at); // move smallest child up
+			at = smallest;
+		}
+		this.keys[at] = key;
+		this.handles[at] = handle;
+		this.pos[handle] = at;
+		return comparisons;
+	}
+}